@@ -0,0 +1,162 @@
+package com.dsq2022.game;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Scores many positions at once on a fork/join pool, e.g., to label the
+ * positions of an archive (see PositionArchiveWriter).
+ *
+ * h gives Board.h of each position; search gives the SearchResult of a
+ * (fixed depth or node) search of each position. Either way the results
+ * are in the order of the input. The work is split into chunks of about
+ * CHUNK positions (fewer for searches), which the pool's threads steal
+ * from each other. Each worker thread has its own transposition table of
+ * hashMegabytes (DEFAULT_HASH_MB unless given), kept from call to call,
+ * and reuses one Search for all the positions it gets in a call.
+ *
+ * The positions of an archive are scored straight from their encoding
+ * (see PositionCodec.h), without making a Board for each one.
+ */
+public final class BatchEvaluator implements AutoCloseable {
+    private static final int  CHUNK = 4096;  ///< positions per task for h
+    private static final int  SEARCH_CHUNK = 4;  ///< positions per task for search
+    public static final int   DEFAULT_HASH_MB = 4;  ///< transposition table per worker thread
+
+    private final ForkJoinPool  pool;
+    private final int           hashMegabytes;  ///< per worker thread
+
+    /// the search state of each worker thread.
+    private final ThreadLocal< Worker >  workers = new ThreadLocal<>();
+    private final AtomicLong             calls = new AtomicLong();  ///< of search
+    //=======================================================================
+    /** a BatchEvaluator using all available processors. */
+    public BatchEvaluator ( ) {
+        this( Runtime.getRuntime().availableProcessors() );
+    }
+    //-----------------------------------------------------------------------
+    public BatchEvaluator ( int threads ) {
+        this( threads, DEFAULT_HASH_MB );
+    }
+    //-----------------------------------------------------------------------
+    /** a BatchEvaluator of threads threads, each searching with a
+     *  transposition table of hashMegabytes.
+     */
+    public BatchEvaluator ( int threads, int hashMegabytes ) {
+        if (threads < 1)  throw new IllegalArgumentException( "threads must be >= 1: " + threads );
+        if (hashMegabytes < 1)  throw new IllegalArgumentException( "megabytes must be >= 1: " + hashMegabytes );
+        this.hashMegabytes = hashMegabytes;
+        this.pool = new ForkJoinPool( threads, p -> {
+            ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread( p );
+            t.setName( "batch-eval-" + t.getPoolIndex() );
+            t.setDaemon( true );
+            return t;
+        }, null, false );
+    }
+    //-----------------------------------------------------------------------
+    /** @return Board.h of each board, in order. */
+    public int[] h ( List< Board > boards ) {
+        int[] out = new int[ boards.size() ];
+        pool.invoke( new Range( 0, out.length, CHUNK, i -> out[ i ] = Board.h( boards.get( i ) ) ) );
+        return out;
+    }
+    //-----------------------------------------------------------------------
+    /** @return Board.h of each board of the (finite) stream, in order. */
+    public int[] h ( Stream< Board > boards ) {
+        return pool.submit( () -> boards.parallel().mapToInt( Board::h ).toArray() ).join();
+    }
+    //-----------------------------------------------------------------------
+    /** @return Board.h of each position of the archive, in order. */
+    public int[] h ( PositionArchiveReader archive ) {
+        if (archive.size() > Integer.MAX_VALUE - 8)  throw new IllegalArgumentException( "too many positions: " + archive.size() );
+        int[] out = new int[ (int) archive.size() ];
+        pool.invoke( new Range( 0, out.length, CHUNK,
+                                i -> out[ i ] = PositionCodec.h( archive.hi( i ), archive.lo( i ) ) ) );
+        return out;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the result of a search within limits (which should set a
+     *  depth or nodes) of each board, in order. limits.threads() and
+     *  hashMegabytes() are not used: the searches run side by side instead,
+     *  each worker with its own table (see above). if limits set a table,
+     *  it is shared by all of them.
+     */
+    public SearchResult[] search ( List< Board > boards, SearchLimits limits ) {
+        SearchResult[] out = new SearchResult[ boards.size() ];
+        long call = calls.incrementAndGet();
+        pool.invoke( new Range( 0, out.length, SEARCH_CHUNK,
+                                i -> out[ i ] = worker().search( call, limits ).search( boards.get( i ) ) ) );
+        return out;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the search state of the calling (worker) thread. */
+    private Worker worker ( ) {
+        Worker w = workers.get();
+        if (w == null) {
+            w = new Worker( new TranspositionTable( hashMegabytes ) );
+            workers.set( w );
+        }
+        return w;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the number of threads. */
+    public int threads ( ) {
+        return pool.getParallelism();
+    }
+    //-----------------------------------------------------------------------
+    @Override
+    public void close ( ) {
+        pool.shutdown();
+    }
+    //=======================================================================
+    /** The table of a worker thread and its Search in the last call. */
+    private static final class Worker {
+        private final TranspositionTable  tt;
+        private long    call;
+        private Search  search;
+
+        Worker ( TranspositionTable tt ) {
+            this.tt = tt;
+        }
+
+        /** @return the Search of the given call (within its limits). */
+        Search search ( long call, SearchLimits limits ) {
+            if (search == null || call != this.call) {
+                this.call = call;
+                this.search = new Search( limits, (limits.table() != null) ? limits.table() : tt );
+            }
+            return search;
+        }
+    }
+    //-----------------------------------------------------------------------
+    /** runs body on the indices [from, to), split into chunks of at most chunk. */
+    private static final class Range extends RecursiveAction {
+        private static final long  serialVersionUID = 1L;
+
+        private final int          from, to, chunk;
+        private final IntConsumer  body;
+
+        Range ( int from, int to, int chunk, IntConsumer body ) {
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+            this.body = body;
+        }
+
+        @Override
+        protected void compute ( ) {
+            if (to - from <= chunk) {
+                for (int i = from; i < to; i++)  body.accept( i );
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll( new Range( from, mid, chunk, body ), new Range( mid, to, chunk, body ) );
+        }
+    }
+
+}  //end class BatchEvaluator
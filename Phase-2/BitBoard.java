@@ -0,0 +1,321 @@
+package com.dsq2022.game;
+
+/**
+ * BitBoard class (an alternative, faster Model for the same game).
+ *
+ * The 9x7 Board has exactly 63 squares, so every set of squares fits in one
+ * long. Square (r,c) is bit r*fCols+c, i.e., bit 0 is the upper left corner
+ * (the same corner as Board.piece[0][0]).
+ *
+ * A position is one mask per side (red, blue) plus one mask per rank
+ * (rat ... elephant, regardless of color). The underlying base never changes,
+ * so water, traps and dens are static masks derived from the standard layout
+ * of Board (see Board.initBase).
+ *
+ * The queries, isValidMove and doMove follow exactly the same rules as Board,
+ * and a BitBoard converts losslessly to and from a Board (see fromBoard and
+ * toBoard).
+ */
+public final class BitBoard {
+    public static final int   fRows = Board.fRows;  ///< no. of Board rows
+    public static final int   fCols = Board.fCols;  ///< no. of Board cols
+    public static final int   SQUARES = fRows * fCols;  ///< 63
+
+    public static final long  ALL = (1L << SQUARES) - 1;  ///< every square
+
+    public static final long  WATER;       ///< the two lakes
+    public static final long  RED_TRAPS;   ///< traps around the red den
+    public static final long  BLUE_TRAPS;  ///< traps around the blue den
+    public static final long  TRAPS;       ///< all traps
+    public static final long  RED_DEN;     ///< the red den
+    public static final long  BLUE_DEN;    ///< the blue den
+    public static final long  DENS;        ///< both dens
+
+    /// PIECE[ 0 ][ rank ] is the red piece of that rank, PIECE[ 1 ][ rank ] the
+    /// blue one. PIECE[ * ][ 0 ] is rbNone.
+    private static final Piece[][] PIECE = new Piece[ 2 ][ 9 ];
+
+    static {
+        Base[][] base = new Base[ fRows ][ fCols ];
+        Board.initBase( base );
+        long water = 0, rTraps = 0, bTraps = 0, rDen = 0, bDen = 0;
+        for (int r = 0; r < fRows; r++) {
+            for (int c = 0; c < fCols; c++) {
+                long bit = bit( r, c );
+                switch (base[ r ][ c ]) {
+                    case cWater:  water  |= bit;  break;
+                    case cRTrap:  rTraps |= bit;  break;
+                    case cBTrap:  bTraps |= bit;  break;
+                    case cRDen:   rDen   |= bit;  break;
+                    case cBDen:   bDen   |= bit;  break;
+                    default:  break;
+                }
+            }
+        }
+        WATER = water;
+        RED_TRAPS = rTraps;
+        BLUE_TRAPS = bTraps;
+        TRAPS = rTraps | bTraps;
+        RED_DEN = rDen;
+        BLUE_DEN = bDen;
+        DENS = rDen | bDen;
+
+        PIECE[ 0 ][ 0 ] = Piece.rbNone;
+        PIECE[ 1 ][ 0 ] = Piece.rbNone;
+        for (Piece p : Piece.values()) {
+            int rank = Board.getRank( p );
+            if (rank == 0)  continue;
+            PIECE[ Board.getColor( p ) == GameColor.Blue ? 1 : 0 ][ rank ] = p;
+        }
+    }
+
+    private long  red;   ///< squares holding a red piece
+    private long  blue;  ///< squares holding a blue piece
+    /// rank[ k ] holds the squares with a piece of rank k (either color); rank[ 0 ] is unused.
+    private final long[]  rank = new long[ 9 ];
+
+    public boolean  bluesTurn = true;  ///< by convention, blue goes first
+    public boolean  moveWasCapture = false;  ///< last move resulted in a capture
+    //=======================================================================
+    /** Init to the standard initial setup (the same as Board()). */
+    public BitBoard ( ) {
+        this( new Board() );
+    }
+    //-----------------------------------------------------------------------
+    /** Init from the pieces, turn and capture flag of the given Board. */
+    public BitBoard ( final Board b ) {
+        for (int r = 0; r < fRows; r++) {
+            for (int c = 0; c < fCols; c++) {
+                put( square( r, c ), b.getPiece( r, c ) );
+            }
+        }
+        this.bluesTurn = b.bluesTurn;
+        this.moveWasCapture = b.moveWasCapture;
+    }
+    //-----------------------------------------------------------------------
+    /** copy ctor. */
+    public BitBoard ( final BitBoard original ) {
+        this.red = original.red;
+        this.blue = original.blue;
+        System.arraycopy( original.rank, 0, this.rank, 0, this.rank.length );
+        this.bluesTurn = original.bluesTurn;
+        this.moveWasCapture = original.moveWasCapture;
+    }
+    //-----------------------------------------------------------------------
+    /** @return a BitBoard with the same pieces, turn and capture flag as b. */
+    public static BitBoard fromBoard ( final Board b ) {
+        return new BitBoard( b );
+    }
+    //-----------------------------------------------------------------------
+    /** @return a (new) Board with the same pieces, turn and capture flag. */
+    public Board toBoard ( ) {
+        Board b = new Board();
+        for (int r = 0; r < fRows; r++) {
+            for (int c = 0; c < fCols; c++) {
+                b.piece[ r ][ c ] = getPiece( r, c );
+            }
+        }
+        b.bluesTurn = this.bluesTurn;
+        b.moveWasCapture = this.moveWasCapture;
+        b.resync();
+        return b;
+    }
+    //=======================================================================
+    /** @return the square index of (r,c). */
+    public static int square ( int r, int c ) {
+        return r * fCols + c;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the single bit mask of (r,c). */
+    public static long bit ( int r, int c ) {
+        return 1L << square( r, c );
+    }
+    //-----------------------------------------------------------------------
+    private static boolean inBounds ( int r, int c ) {
+        return r >= 0 && r < fRows && c >= 0 && c < fCols;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the squares holding a red piece. */
+    public long red ( ) {
+        return red;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the squares holding a blue piece. */
+    public long blue ( ) {
+        return blue;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the squares holding a piece of rank k (1..8), either color. */
+    public long rank ( int k ) {
+        return rank[ k ];
+    }
+    //-----------------------------------------------------------------------
+    /** @return the squares holding any piece. */
+    public long occupied ( ) {
+        return red | blue;
+    }
+    //=======================================================================
+    /** @return the piece at (r,c), or rbNone if empty or out of bounds. */
+    public Piece getPiece ( int r, int c ) {
+        if (!inBounds( r, c ))  return Piece.rbNone;
+        long bit = bit( r, c );
+        if (((red | blue) & bit) == 0)  return Piece.rbNone;
+        return PIECE[ (blue & bit) != 0 ? 1 : 0 ][ rankOf( bit ) ];
+    }
+    //-----------------------------------------------------------------------
+    /** @return what appears on the underlying base at (r,c), or cNone if out of bounds. */
+    public Base getBase ( int r, int c ) {
+        if (!inBounds( r, c ))  return Base.cNone;
+        long bit = bit( r, c );
+        if ((WATER & bit) != 0)       return Base.cWater;
+        if ((RED_TRAPS & bit) != 0)   return Base.cRTrap;
+        if ((BLUE_TRAPS & bit) != 0)  return Base.cBTrap;
+        if ((RED_DEN & bit) != 0)     return Base.cRDen;
+        if ((BLUE_DEN & bit) != 0)    return Base.cBDen;
+        return Base.cGround;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the rank of the piece at (r,c) (or 0 for none). */
+    public int getRank ( int r, int c ) {
+        if (!inBounds( r, c ))  return 0;
+        return rankOf( bit( r, c ) );
+    }
+    //-----------------------------------------------------------------------
+    /** @return the color of the piece at (r,c) (or GameColor.None). */
+    public GameColor getColor ( int r, int c ) {
+        if (!inBounds( r, c ))  return GameColor.None;
+        long bit = bit( r, c );
+        if ((red & bit) != 0)   return GameColor.Red;
+        if ((blue & bit) != 0)  return GameColor.Blue;
+        return GameColor.None;
+    }
+    //-----------------------------------------------------------------------
+    /** @return t if (r,c) does not have any piece on it; f otherwise or if out of bounds. */
+    public boolean isEmpty ( int r, int c ) {
+        return inBounds( r, c ) && ((red | blue) & bit( r, c )) == 0;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the count of rats in the water. */
+    public int countOfRatsInWater ( ) {
+        return Long.bitCount( rank[ 1 ] & WATER );
+    }
+    //-----------------------------------------------------------------------
+    /** @return the number of blue pieces remaining. */
+    public int countBlue ( ) {
+        return Long.bitCount( blue );
+    }
+    //-----------------------------------------------------------------------
+    /** @return the number of red pieces remaining. */
+    public int countRed ( ) {
+        return Long.bitCount( red );
+    }
+    //-----------------------------------------------------------------------
+    /** @return true if a red piece is in the blue den or only red has pieces left. */
+    public boolean isRedWinner ( ) {
+        return (red & BLUE_DEN) != 0 || (red != 0 && blue == 0);
+    }
+    //-----------------------------------------------------------------------
+    /** @return true if a blue piece is in the red den or only blue has pieces left. */
+    public boolean isBlueWinner ( ) {
+        return (blue & RED_DEN) != 0 || (blue != 0 && red == 0);
+    }
+    //-----------------------------------------------------------------------
+    /** @return true if the game is over (same as Board.gameOver). */
+    public boolean gameOver ( ) {
+        return red == 0 || blue == 0 || (red & BLUE_DEN) != 0 || (blue & RED_DEN) != 0;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the rank (1..8) of the piece on the single bit square, or 0. */
+    private int rankOf ( long bit ) {
+        for (int k = 1; k <= 8; k++) {
+            if ((rank[ k ] & bit) != 0)  return k;
+        }
+        return 0;
+    }
+    //-----------------------------------------------------------------------
+    /** Place p (or nothing if rbNone) on square sq, which must be empty. */
+    private void put ( int sq, Piece p ) {
+        int k = Board.getRank( p );
+        if (k == 0)  return;
+        long bit = 1L << sq;
+        if (Board.getColor( p ) == GameColor.Blue)  blue |= bit;
+        else                                         red  |= bit;
+        rank[ k ] |= bit;
+    }
+    //=======================================================================
+    /** Same rules as Board.isValidMove.
+     *  @return true if the proposed move is valid regardless of whose turn
+     *  it is; false otherwise.
+     */
+    public boolean isValidMove ( int fromRow, int fromCol, int toRow, int toCol ) {
+        if (!inBounds( fromRow, fromCol ) || !inBounds( toRow, toCol ))  return false;
+        long from = bit( fromRow, fromCol );
+        long to = bit( toRow, toCol );
+        long own, opp, ownDen;
+        if ((red & from) != 0) {
+            own = red;   opp = blue;  ownDen = RED_DEN;
+        } else if ((blue & from) != 0) {
+            own = blue;  opp = red;   ownDen = BLUE_DEN;
+        } else {
+            return false;
+        }
+        if ((own & to) != 0 || (ownDen & to) != 0)  return false;
+        int k = rankOf( from );
+        if ((WATER & to) != 0 && k != 1)  return false;
+
+        int dr = Math.abs( toRow - fromRow );
+        int dc = Math.abs( toCol - fromCol );
+        if (dr + dc != 1) {
+            if (k != 6 && k != 7)  return false;
+            long between = 0;
+            if (dr == 0 && dc == 3) {
+                int step = toCol > fromCol ? 1 : -1;
+                for (int c = fromCol + step; c != toCol; c += step)  between |= bit( fromRow, c );
+            } else if (dc == 0 && dr == 4) {
+                int step = toRow > fromRow ? 1 : -1;
+                for (int r = fromRow + step; r != toRow; r += step)  between |= bit( r, fromCol );
+            } else {
+                return false;
+            }
+            if ((between & ~WATER) != 0 || (between & (red | blue)) != 0)  return false;
+        }
+
+        if ((opp & to) == 0)  return true;
+        if (((WATER & from) == 0) != ((WATER & to) == 0))  return false;
+        if ((RED_TRAPS & to) != 0 && (Board.universalTraps || opp == blue))  return true;
+        if ((BLUE_TRAPS & to) != 0 && (Board.universalTraps || opp == red))  return true;
+        int victim = rankOf( to );
+        if (k == 1 && victim == 8)  return true;
+        if (k == 8 && victim == 1)  return false;
+        return k >= victim;
+    }
+    //-----------------------------------------------------------------------
+    /** Same rules as Board.doMove: perform the move iff the game is not
+     *  over, it is the mover's turn and the move is valid, update
+     *  moveWasCapture and the turn.
+     *  @return true if the proposed move is valid; false otherwise.
+     */
+    public boolean doMove ( int fromRow, int fromCol, int toRow, int toCol ) {
+        if (gameOver())  return false;
+        if (getColor( fromRow, fromCol ) != (bluesTurn ? GameColor.Blue : GameColor.Red))  return false;
+        if (!isValidMove( fromRow, fromCol, toRow, toCol ))  return false;
+
+        long from = bit( fromRow, fromCol );
+        long to = bit( toRow, toCol );
+        long clear = ~(from | to);
+        moveWasCapture = ((red | blue) & to) != 0;
+        int k = rankOf( from );
+        for (int i = 1; i <= 8; i++)  rank[ i ] &= clear;
+        rank[ k ] |= to;
+        if (bluesTurn) {
+            blue = (blue & clear) | to;
+            red &= ~to;
+        } else {
+            red = (red & clear) | to;
+            blue &= ~to;
+        }
+        bluesTurn = !bluesTurn;
+        return true;
+    }
+
+}  //end class BitBoard
@@ -2,9 +2,12 @@ package com.dsq2022.game;
 
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -42,6 +45,23 @@ public class Board implements Serializable {
     public boolean  bluesTurn = true;  ///< by convention, blue goes first
     public boolean  moveWasCapture = false;  ///< last move resulted in a capture
     public static final boolean  universalTraps = true;  ///< all traps are universal (see below)
+
+    private static final Piece[]      pieces = Piece.values();  ///< by ordinal
+    private static final GameColor[]  colorOf = new GameColor[ pieces.length ];  ///< by ordinal
+    static {
+        for (Piece p : pieces)  colorOf[ p.ordinal() ] = getColor( p );
+    }
+
+    /// Zobrist key of the piece array (without the turn; see zobristKey).
+    /// kept up to date by setPiece and doMove. call resync after writing
+    /// to piece directly.
+    private long  pieceKey;
+    /// squares (bit r*fCols+c) holding a rat (of either color); for jumps.
+    private long  rats;
+    /// squares holding a red (blue) piece; for O(1) counts, dens and gameOver.
+    private long  reds, blues;
+    /// sum of Evaluator.value over the pieces (blue +, red -); see evaluation.
+    private int   eval;
     //=======================================================================
     /** Init the Board. The "Board" consists of the base which doesn't change
      *  and the pieces which move.
@@ -52,77 +72,7 @@ public class Board implements Serializable {
      */
     public Board ( ) {
         //init the underlying Board base
-        this.base[0][0] = Base.cGround;
-        this.base[0][1] = Base.cGround;
-        this.base[0][2] = Base.cRTrap;
-        this.base[0][3] = Base.cRDen;
-        this.base[0][4] = Base.cRTrap;
-        this.base[0][5] = Base.cGround;
-        this.base[0][6] = Base.cGround;
-
-        this.base[1][0] = Base.cGround;
-        this.base[1][1] = Base.cGround;
-        this.base[1][2] = Base.cGround;
-        this.base[1][3] = Base.cRTrap;
-        this.base[1][4] = Base.cGround;
-        this.base[1][5] = Base.cGround;
-        this.base[1][6] = Base.cGround;
-
-        this.base[2][0] = Base.cGround;
-        this.base[2][1] = Base.cGround;
-        this.base[2][2] = Base.cGround;
-        this.base[2][3] = Base.cGround;
-        this.base[2][4] = Base.cGround;
-        this.base[2][5] = Base.cGround;
-        this.base[2][6] = Base.cGround;
-
-        this.base[3][0] = Base.cGround;
-        this.base[3][1] = Base.cWater;
-        this.base[3][2] = Base.cWater;
-        this.base[3][3] = Base.cGround;
-        this.base[3][4] = Base.cWater;
-        this.base[3][5] = Base.cWater;
-        this.base[3][6] = Base.cGround;
-
-        this.base[4][0] = Base.cGround;
-        this.base[4][1] = Base.cWater;
-        this.base[4][2] = Base.cWater;
-        this.base[4][3] = Base.cGround;
-        this.base[4][4] = Base.cWater;
-        this.base[4][5] = Base.cWater;
-        this.base[4][6] = Base.cGround;
-
-        this.base[5][0] = Base.cGround;
-        this.base[5][1] = Base.cWater;
-        this.base[5][2] = Base.cWater;
-        this.base[5][3] = Base.cGround;
-        this.base[5][4] = Base.cWater;
-        this.base[5][5] = Base.cWater;
-        this.base[5][6] = Base.cGround;
-
-        this.base[6][0] = Base.cGround;
-        this.base[6][1] = Base.cGround;
-        this.base[6][2] = Base.cGround;
-        this.base[6][3] = Base.cGround;
-        this.base[6][4] = Base.cGround;
-        this.base[6][5] = Base.cGround;
-        this.base[6][6] = Base.cGround;
-
-        this.base[7][0] = Base.cGround;
-        this.base[7][1] = Base.cGround;
-        this.base[7][2] = Base.cGround;
-        this.base[7][3] = Base.cBTrap;
-        this.base[7][4] = Base.cGround;
-        this.base[7][5] = Base.cGround;
-        this.base[7][6] = Base.cGround;
-
-        this.base[8][0] = Base.cGround;
-        this.base[8][1] = Base.cGround;
-        this.base[8][2] = Base.cBTrap;
-        this.base[8][3] = Base.cBDen;
-        this.base[8][4] = Base.cBTrap;
-        this.base[8][5] = Base.cGround;
-        this.base[8][6] = Base.cGround;
+        initBase( this.base );
 
         //place the pieces
         this.piece[0][0] = Piece.rLion;
@@ -141,6 +91,84 @@ public class Board implements Serializable {
         this.piece[8][1] = Piece.bTiger;
         this.piece[8][6] = Piece.bLion;
 
+        resync();
+    }
+    //-----------------------------------------------------------------------
+    /** Init the underlying Board base (which doesn't change) to the standard
+     *  layout. Also used by BitBoard, without constructing a Board.
+     */
+    static void initBase ( Base[][] base ) {
+        base[0][0] = Base.cGround;
+        base[0][1] = Base.cGround;
+        base[0][2] = Base.cRTrap;
+        base[0][3] = Base.cRDen;
+        base[0][4] = Base.cRTrap;
+        base[0][5] = Base.cGround;
+        base[0][6] = Base.cGround;
+
+        base[1][0] = Base.cGround;
+        base[1][1] = Base.cGround;
+        base[1][2] = Base.cGround;
+        base[1][3] = Base.cRTrap;
+        base[1][4] = Base.cGround;
+        base[1][5] = Base.cGround;
+        base[1][6] = Base.cGround;
+
+        base[2][0] = Base.cGround;
+        base[2][1] = Base.cGround;
+        base[2][2] = Base.cGround;
+        base[2][3] = Base.cGround;
+        base[2][4] = Base.cGround;
+        base[2][5] = Base.cGround;
+        base[2][6] = Base.cGround;
+
+        base[3][0] = Base.cGround;
+        base[3][1] = Base.cWater;
+        base[3][2] = Base.cWater;
+        base[3][3] = Base.cGround;
+        base[3][4] = Base.cWater;
+        base[3][5] = Base.cWater;
+        base[3][6] = Base.cGround;
+
+        base[4][0] = Base.cGround;
+        base[4][1] = Base.cWater;
+        base[4][2] = Base.cWater;
+        base[4][3] = Base.cGround;
+        base[4][4] = Base.cWater;
+        base[4][5] = Base.cWater;
+        base[4][6] = Base.cGround;
+
+        base[5][0] = Base.cGround;
+        base[5][1] = Base.cWater;
+        base[5][2] = Base.cWater;
+        base[5][3] = Base.cGround;
+        base[5][4] = Base.cWater;
+        base[5][5] = Base.cWater;
+        base[5][6] = Base.cGround;
+
+        base[6][0] = Base.cGround;
+        base[6][1] = Base.cGround;
+        base[6][2] = Base.cGround;
+        base[6][3] = Base.cGround;
+        base[6][4] = Base.cGround;
+        base[6][5] = Base.cGround;
+        base[6][6] = Base.cGround;
+
+        base[7][0] = Base.cGround;
+        base[7][1] = Base.cGround;
+        base[7][2] = Base.cGround;
+        base[7][3] = Base.cBTrap;
+        base[7][4] = Base.cGround;
+        base[7][5] = Base.cGround;
+        base[7][6] = Base.cGround;
+
+        base[8][0] = Base.cGround;
+        base[8][1] = Base.cGround;
+        base[8][2] = Base.cBTrap;
+        base[8][3] = Base.cBDen;
+        base[8][4] = Base.cBTrap;
+        base[8][5] = Base.cGround;
+        base[8][6] = Base.cGround;
     }
     //-----------------------------------------------------------------------
     /** @return the specific (moveable) piece (e.g., bWolf or rbNone) at the
@@ -197,92 +225,84 @@ public class Board implements Serializable {
      */
     @Override
     public String toString() {
-        List<String> firstList = new ArrayList<String>();
-        List<String> secondList = new ArrayList<String>();
-        for (int i = 0; i < fRows; i++) {
-            String firstStr = "|\t";
-            for (int j = 0; j < fCols; j++) {
-                Base base1 = getBase(i,j);
-                String threeCharOfpieceName = "";
-                if (base1 != null) {
-                    if (base1 == Base.cNone) {
-                        threeCharOfpieceName = "N";
-                    } else if (base1 == Base.cBDen) {
-                        threeCharOfpieceName = "BD";
-                    } else if (base1 == Base.cBTrap) {
-                        threeCharOfpieceName = "BT";
-                    } else if (base1 == Base.cGround) {
-                        threeCharOfpieceName = "G";
-                    } else if (base1 == Base.cWater) {
-                        threeCharOfpieceName = "W";
-                    } else if (base1 == Base.cRDen) {
-                        threeCharOfpieceName = "RD";
-                    } else if (base1 == Base.cRTrap) {
-                        threeCharOfpieceName = "RT";
+        StringBuilder sb = new StringBuilder( 2 * fRows * (3 + 4 * fCols) );
+        try {
+            render( sb, RenderStyle.SIDE_BY_SIDE );
+        } catch (IOException e) {
+            throw new UncheckedIOException( e );  //a StringBuilder doesn't throw
+        }
+        return sb.toString();
+    }
+    //-----------------------------------------------------------------------
+    /// labels by ordinal: "G", "W", "RT", "BD", ... for the base, "rLi",
+    /// "bEl", ... (the first 3 characters of the name) and "." for the pieces.
+    private static final String[] baseLabel = new String[ Base.values().length ];
+    private static final String[] pieceLabel = new String[ Piece.values().length ];
+    /// FEN-like letter by ordinal (see RenderStyle.COMPACT).
+    private static final char[]   pieceLetter = new char[ Piece.values().length ];
+    static {
+        for (Base b : Base.values()) {
+            StringBuilder label = new StringBuilder();
+            for (char ch : b.name().substring( 1 ).toCharArray()) {
+                if (Character.isUpperCase( ch ))  label.append( ch );
+            }
+            baseLabel[ b.ordinal() ] = label.toString();
+        }
+        for (Piece p : Piece.values()) {
+            pieceLabel[ p.ordinal() ] = (p == Piece.rbNone) ? "." : p.name().substring( 0, 3 );
+            char letter = " RCDWPTLE".charAt( getRank( p ) );
+            pieceLetter[ p.ordinal() ] = (getColor( p ) == GameColor.Red) ? Character.toLowerCase( letter ) : letter;
+        }
+    }
+    //-----------------------------------------------------------------------
+    /** Draw this Board to out in the given style (see RenderStyle), without
+     *  building intermediate strings.
+     */
+    public void render ( Appendable out, RenderStyle style ) throws IOException {
+        switch (style) {
+            case COMPACT:
+                for (int r = 0; r < fRows; r++) {
+                    if (r > 0)  out.append( '/' );
+                    int empty = 0;
+                    for (int c = 0; c < fCols; c++) {
+                        Piece p = getPiece( r, c );
+                        if (p == Piece.rbNone) {
+                            empty++;
+                            continue;
+                        }
+                        if (empty > 0)  out.append( (char) ('0' + empty) );
+                        empty = 0;
+                        out.append( pieceLetter[ p.ordinal() ] );
                     }
-                    firstStr += threeCharOfpieceName + "\t";
+                    if (empty > 0)  out.append( (char) ('0' + empty) );
                 }
-            }
-            firstStr += "|";
-            firstList.add(firstStr);
-        }
-
-        for (int i = 0; i < fRows; i++) {
-            String secondStr = "|\t";
-            for (int j = 0; j < fCols; j++) {
-                Piece piece1 = getPiece(i,j);
-                String threeCharOfpieceName = "";
-                if (piece1 != null) {
-                    if (piece1 == Piece.bCat) {
-                        threeCharOfpieceName = "bCa";
-                    } else if (piece1 == Piece.bDog) {
-                        threeCharOfpieceName = "bDo";
-                    } else if (piece1 == Piece.bElephant) {
-                        threeCharOfpieceName = "bEl";
-                    } else if (piece1 == Piece.bLeopard) {
-                        threeCharOfpieceName = "bLe";
-                    } else if (piece1 == Piece.bLion) {
-                        threeCharOfpieceName = "bLi";
-                    } else if (piece1 == Piece.bRat) {
-                        threeCharOfpieceName = "bRa";
-                    } else if (piece1 == Piece.bTiger) {
-                        threeCharOfpieceName = "bTi";
-                    } else if (piece1 == Piece.bWolf) {
-                        threeCharOfpieceName = "bWo";
-                    } else if (piece1 == Piece.rCat) {
-                        threeCharOfpieceName = "rCa";
-                    } else if (piece1 == Piece.rDog) {
-                        threeCharOfpieceName = "rDo";
-                    } else if (piece1 == Piece.rElephant) {
-                        threeCharOfpieceName = "rEl";
-                    } else if (piece1 == Piece.rLeopard) {
-                        threeCharOfpieceName = "rLe";
-                    } else if (piece1 == Piece.rLion) {
-                        threeCharOfpieceName = "rLi";
-                    } else if (piece1 == Piece.rRat) {
-                        threeCharOfpieceName = "rRa";
-                    } else if (piece1 == Piece.rTiger) {
-                        threeCharOfpieceName = "rTi";
-                    } else if (piece1 == Piece.rWolf) {
-                        threeCharOfpieceName = "rWo";
-                    } else if (piece1 == Piece.rbNone) {
-                        threeCharOfpieceName = ".";
+                out.append( ' ' ).append( bluesTurn ? 'b' : 'r' );
+                break;
+            case GRID:
+                for (int r = 0; r < fRows; r++) {
+                    out.append( '|' );
+                    for (int c = 0; c < fCols; c++) {
+                        String label = pieceLabel[ getPiece( r, c ).ordinal() ];
+                        out.append( ' ' ).append( label );
+                        for (int i = label.length(); i < 3; i++)  out.append( ' ' );
                     }
+                    out.append( " |\n" );
                 }
-                secondStr += threeCharOfpieceName + "\t";
-            }
-            secondStr += "|";
-            secondList.add(secondStr);
-        }
-        String finalStr = "";
-        for (int i = 0; i < fRows; i++) {
-            String f1 = firstList.get(i);
-            String f2 = secondList.get(i);
-            String f3 = f1 + "\t\t" + f2 + "\n";
-            finalStr += f3;
+                break;
+            case SIDE_BY_SIDE:
+                for (int r = 0; r < fRows; r++) {
+                    out.append( "|\t" );
+                    for (int c = 0; c < fCols; c++) {
+                        out.append( baseLabel[ getBase( r, c ).ordinal() ] ).append( '\t' );
+                    }
+                    out.append( "|\t\t|\t" );
+                    for (int c = 0; c < fCols; c++) {
+                        out.append( pieceLabel[ getPiece( r, c ).ordinal() ] ).append( '\t' );
+                    }
+                    out.append( "|\n" );
+                }
+                break;
         }
-        System.out.println(finalStr);
-        return finalStr;
     }
 
     //=======================================================================
@@ -299,10 +319,31 @@ public class Board implements Serializable {
         Base b1 = getBase(r,c);
         if(b1!=Base.cWater || b1!=Base.cBTrap || b1!=Base.cRTrap
                 || b1!=Base.cBDen || b1!=Base.cRDen){
-            piece[r][c]=p;
+            place( r, c, p );
         }
     }
     //-----------------------------------------------------------------------
+    /** put p on (r,c) and keep the state derived from the piece array (the
+     *  Zobrist key, the rat mask and the evaluation) up to date.
+     */
+    private void place ( int r, int c, Piece p ) {
+        int sq = r * fCols + c;
+        Piece old = piece[r][c];
+        pieceKey ^= Zobrist.key( sq, old ) ^ Zobrist.key( sq, p );
+        eval += Evaluator.value( p, sq ) - Evaluator.value( old, sq );
+        long bit = 1L << sq;
+        rats &= ~bit;
+        reds &= ~bit;
+        blues &= ~bit;
+        if (p != null) {
+            if (p == Piece.rRat || p == Piece.bRat)  rats |= bit;
+            GameColor color = colorOf[ p.ordinal() ];
+            if (color == GameColor.Red)   reds |= bit;
+            if (color == GameColor.Blue)  blues |= bit;
+        }
+        piece[r][c] = p;
+    }
+    //-----------------------------------------------------------------------
     /** Given a piece p, return its rank (or 0 for an unknown piece).
      *  Rat is 1, cat is 2, dog is 3, wolf is 4, leopard is 5, tiger is 6,
      *  lion is 7, elephant is 8, regardless of color.
@@ -425,15 +466,7 @@ public class Board implements Serializable {
      *  @todo v2
      */
     public int countOfRatsInWater ( ) {
-        int countOfRatsInWater=0;
-        for (int i=0;i<piece.length;i++){
-            for (int j=0;j<piece[i].length;j++){
-                if(piece[i][j]==Piece.bRat || piece[i][j]==Piece.rRat){
-                    countOfRatsInWater++;
-                }
-            }
-        }
-        return countOfRatsInWater;
+        return Long.bitCount( rats & MoveTables.WATER );
     }
     //=======================================================================
     // v3 (version 3): isValidMove, doMove
@@ -462,7 +495,49 @@ public class Board implements Serializable {
      * @todo v3
      */
     protected boolean isValidMove ( int fromRow, int fromCol, int toRow, int toCol ) {
-        return false;
+        if (fromRow < 0 || fromRow >= fRows || fromCol < 0 || fromCol >= fCols)  return false;
+        if (toRow < 0 || toRow >= fRows || toCol < 0 || toCol >= fCols)          return false;
+        return isValidMove( fromRow * fCols + fromCol, toRow * fCols + toCol );
+    }
+    //-----------------------------------------------------------------------
+    /** isValidMove for squares (r*fCols+c). the geometry (neighbours, jumps
+     *  across the water, dens, water) comes from MoveTables, so a jump only
+     *  needs one test of the rat mask.
+     */
+    private boolean isValidMove ( int from, int to ) {
+        Piece p = piece[ from / fCols ][ from % fCols ];
+        int rank = getRank( p );
+        if (rank == 0)  return false;
+        GameColor color = getColor( p );
+        long toBit = 1L << to;
+
+        //may not enter your own den
+        if ((MoveTables.ownDen( color ) & toBit) != 0)  return false;
+        //only the rat may swim
+        if ((MoveTables.WATER & toBit) != 0 && rank != 1)  return false;
+        if ((MoveTables.NEIGHBOUR_MASK[ from ] & toBit) == 0) {
+            //the lion and tiger may jump over the water (but not over a rat)
+            if (rank != 6 && rank != 7)  return false;
+            if ((MoveTables.JUMP_MASK[ from ] & toBit) == 0)  return false;
+            if ((MoveTables.jumpOver( from, to ) & rats) != 0)  return false;
+        }
+
+        Piece victim = piece[ to / fCols ][ to % fCols ];
+        int victimRank = getRank( victim );
+        if (victimRank == 0)  return true;
+        GameColor victimColor = getColor( victim );
+        if (victimColor == color)  return false;
+
+        //a rat may not attack across the bank (into or out of the water)
+        if (((MoveTables.WATER >>> from) & 1) != ((MoveTables.WATER >>> to) & 1))  return false;
+
+        //a trapped piece may be captured by any opponent
+        if ((BitBoard.RED_TRAPS & toBit) != 0 && (universalTraps || victimColor == GameColor.Blue))  return true;
+        if ((BitBoard.BLUE_TRAPS & toBit) != 0 && (universalTraps || victimColor == GameColor.Red))  return true;
+
+        if (rank == 1 && victimRank == 8)  return true;   //rat takes elephant
+        if (rank == 8 && victimRank == 1)  return false;  //but not the reverse
+        return rank >= victimRank;
     }
     //-----------------------------------------------------------------------
     /** Perform the specified move (update the piece array), but only if it's
@@ -477,7 +552,61 @@ public class Board implements Serializable {
      *  @todo v3
      */
     public boolean doMove ( int fromRow, int fromCol, int toRow, int toCol ) {
-        return false;
+        if (gameOver())  return false;
+        GameColor turn = bluesTurn ? GameColor.Blue : GameColor.Red;
+        if (getColor( fromRow, fromCol ) != turn)  return false;
+        if (!isValidMove( fromRow, fromCol, toRow, toCol ))  return false;
+
+        moveWasCapture = !isEmpty( toRow, toCol );
+        place( toRow, toCol, piece[ fromRow ][ fromCol ] );
+        place( fromRow, fromCol, Piece.rbNone );
+        bluesTurn = !bluesTurn;
+        return true;
+    }
+    //-----------------------------------------------------------------------
+    //-----------------------------------------------------------------------
+    /** Perform the (packed, see Move) move in place, without checking it,
+     *  and return what is needed to take it back with unmakeMove.
+     *  Unlike doMove, no copy of the Board is needed to search a move, and
+     *  nothing is allocated.
+     *
+     *  @param m must be a valid move for the player whose turn it is (e.g.,
+     *  one returned by suggestMoves).
+     *  @return the undo info for unmakeMove.
+     */
+    public int makeMove ( int m ) {
+        int fr = Move.fromRow( m ), fc = Move.fromCol( m );
+        int tr = Move.toRow( m ),   tc = Move.toCol( m );
+        Piece p = piece[ fr ][ fc ];
+        Piece captured = piece[ tr ][ tc ];
+
+        //undo info: move (bits 0..11), captured piece ordinal+1 or 0 for
+        //null (bits 12..17), moveWasCapture (bit 18), bluesTurn (bit 19)
+        int undo = (m & 0xFFF)
+                 | ((captured == null ? 0 : captured.ordinal() + 1) << 12)
+                 | (moveWasCapture ? 1 << 18 : 0)
+                 | (bluesTurn ? 1 << 19 : 0);
+
+        moveWasCapture = captured != null && captured != Piece.rbNone;
+        place( tr, tc, p );
+        place( fr, fc, Piece.rbNone );
+        bluesTurn = !bluesTurn;
+        return undo;
+    }
+    //-----------------------------------------------------------------------
+    /** Take back the last makeMove, restoring the captured piece, bluesTurn
+     *  and moveWasCapture exactly.
+     *  @param undo is the value returned by the matching makeMove.
+     */
+    public void unmakeMove ( int undo ) {
+        int fr = Move.fromRow( undo ), fc = Move.fromCol( undo );
+        int tr = Move.toRow( undo ),   tc = Move.toCol( undo );
+        int code = (undo >>> 12) & 0x3F;
+        Piece captured = (code == 0) ? null : pieces[ code - 1 ];
+        place( fr, fc, piece[ tr ][ tc ] );
+        place( tr, tc, captured );
+        moveWasCapture = (undo & (1 << 18)) != 0;
+        bluesTurn = (undo & (1 << 19)) != 0;
     }
     //=======================================================================
     // v4 (version 4): countBlue, countRed, isRedWinner, isBlueWinner,
@@ -487,14 +616,14 @@ public class Board implements Serializable {
      *  @todo v4
      */
     public int countBlue ( ) {
-        return -1;
+        return Long.bitCount( blues );
     }
     //-----------------------------------------------------------------------
     /** @returns the number of red pieces remaining.
      *  @todo v4
      */
     public int countRed ( ) {
-        return -1;
+        return Long.bitCount( reds );
     }
     //-----------------------------------------------------------------------
     /** @return true if red is a winner (regardless of whose turn it is);
@@ -504,7 +633,8 @@ public class Board implements Serializable {
      *  @todo v4
      */
     public boolean isRedWinner ( ) {
-        return false;
+        if ((reds & BitBoard.BLUE_DEN) != 0)  return true;
+        return reds != 0 && blues == 0;
     }
     //-----------------------------------------------------------------------
     /** @return true if blue is a winner (regardless of whose turn it is);
@@ -514,7 +644,8 @@ public class Board implements Serializable {
      *  @todo v4
      */
     public boolean isBlueWinner ( ) {
-        return false;
+        if ((blues & BitBoard.RED_DEN) != 0)  return true;
+        return blues != 0 && reds == 0;
     }
     //-----------------------------------------------------------------------
     /** copy ctor.
@@ -524,6 +655,17 @@ public class Board implements Serializable {
      */
     public Board ( final Board original ) {
         super();
+        for (int r = 0; r < fRows; r++) {
+            System.arraycopy( original.base[r], 0, this.base[r], 0, fCols );
+            System.arraycopy( original.piece[r], 0, this.piece[r], 0, fCols );
+        }
+        this.bluesTurn = original.bluesTurn;
+        this.moveWasCapture = original.moveWasCapture;
+        this.pieceKey = original.pieceKey;
+        this.rats = original.rats;
+        this.reds = original.reds;
+        this.blues = original.blues;
+        this.eval = original.eval;
     }
     //-----------------------------------------------------------------------
     /** this is a "proper" equals method.
@@ -532,7 +674,11 @@ public class Board implements Serializable {
      */
     @Override
     public boolean equals ( Object other ) {
-        return false;
+        if (this == other)  return true;
+        if (!(other instanceof Board))  return false;
+        Board b = (Board) other;
+        return this.bluesTurn == b.bluesTurn && this.pieceKey == b.pieceKey
+            && equals( b.piece );
     }
     //-----------------------------------------------------------------------
     /** this is NOT a "proper" equals method but can be used by a "proper" one.
@@ -544,7 +690,13 @@ public class Board implements Serializable {
      */
     @PublicForTesting( shouldBe="private" )
     public boolean equals ( Piece[][] otherPiece ) {
-        return false;
+        for (int r = 0; r < fRows; r++) {
+            for (int c = 0; c < fCols; c++) {
+                Piece other = otherPiece[r][c];
+                if (getPiece( r, c ) != (other == null ? Piece.rbNone : other))  return false;
+            }
+        }
+        return true;
     }
     //-----------------------------------------------------------------------
     // **** this function is not required / tested / necessary.
@@ -557,7 +709,13 @@ public class Board implements Serializable {
     // initialized, and both of the same size.
     @PublicForTesting( shouldBe="private" )
     public boolean equals ( Base[][] otherBase ) {
-        return false;
+        for (int r = 0; r < fRows; r++) {
+            for (int c = 0; c < fCols; c++) {
+                Base other = otherBase[r][c];
+                if (getBase( r, c ) != (other == null ? Base.cNone : other))  return false;
+            }
+        }
+        return true;
     }
     //=======================================================================
     // v5 (version 5): hashCode, gameOver (mention change to doMove to call
@@ -572,42 +730,143 @@ public class Board implements Serializable {
      *  @todo v5
      */
     public boolean gameOver ( ) {
-        return false;
+        return reds == 0 || blues == 0
+            || (reds & BitBoard.BLUE_DEN) != 0 || (blues & BitBoard.RED_DEN) != 0;
     }
     //-----------------------------------------------------------------------
     /** this function overrides the default hashCode function.
      *  <p> from "Effective Java" by J. Bloch:
      *  "Item 9: Always override hashCode when you override equals" </p>
      *
-     *  <p> use the string algorithm from
-     *  https://en.wikipedia.org/wiki/Java_hashCode%28%29#The_java.lang.String_hash_function.
-     *  simply treat the individual piece values (i.e., piece[r][c].ordinal()) as the
-     *  individual character values. (DO NOT use charAt on the string returned
-     *  from toString for this function.) also include the value of mBlacksTurn
-     *  as described below as the last (i.e., nth) character. </p>
-     *
-     *  <p> DO NOT include anything else (just the piece array contents and then bluesTurn).
-     *  It quickly becomes too complicated. </p>
+     *  <p> the hash code is folded from the 64-bit Zobrist key (see
+     *  zobristKey), which covers just the piece array contents and then
+     *  bluesTurn. it costs O(1) instead of a pass over all 63 squares. </p>
      *
      *  @return the calculated hash code.
-     *  @todo v5
      */
     @Override
     public int hashCode ( ) {
-        return -1;
+        long key = zobristKey();
+        return (int) (key ^ (key >>> 32));
+    }
+    //-----------------------------------------------------------------------
+    /** @return the 64-bit Zobrist key of the piece array contents and bluesTurn.
+     *  setPiece and doMove keep it up to date incrementally.
+     */
+    public long zobristKey ( ) {
+        return bluesTurn ? pieceKey ^ Zobrist.BLUES_TURN : pieceKey;
+    }
+    //-----------------------------------------------------------------------
+    /** recompute all state derived from the piece array (e.g., the Zobrist
+     *  key). call this after writing to piece directly instead of through
+     *  setPiece or doMove.
+     */
+    public void resync ( ) {
+        pieceKey = 0;
+        rats = 0;
+        reds = 0;
+        blues = 0;
+        eval = 0;
+        for (int r = 0; r < fRows; r++) {
+            for (int c = 0; c < fCols; c++) {
+                Piece p = piece[r][c];
+                piece[r][c] = null;
+                place( r, c, p );
+            }
+        }
+    }
+    //-----------------------------------------------------------------------
+    /** @return the static evaluation of the pieces (see Evaluator), from
+     *  blue's point of view, kept up to date by setPiece, doMove and
+     *  make/unmakeMove (so this is O(1)).
+     */
+    public int evaluation ( ) {
+        if (Evaluator.DEBUG) {
+            int full = Evaluator.full( this );
+            if (full != eval)  throw new IllegalStateException( "incremental evaluation " + eval + " != " + full );
+        }
+        return eval;
+    }
+    //-----------------------------------------------------------------------
+    private void readObject ( ObjectInputStream in ) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        resync();
     }
     //=======================================================================
     /** create a list of all possible moves given this as the starting
      *  position.
      *  @return the list of all possible moves.
-     *  @todo v6
      */
     public ArrayList< Board > suggest ( ) {
-        ArrayList< Board > list = new ArrayList<>();
+        int[] moves = suggestMoves();
+        ArrayList< Board > list = new ArrayList<>( moves.length );
+        for (int m : moves) {
+            Board b = new Board( this );
+            b.makeMove( m );
+            list.add( b );
+        }
         return list;
     }
     //-----------------------------------------------------------------------
+    /** all possible moves (see Move) of the player whose turn it is, given
+     *  this as the starting position. there are none if the game is over.
+     *  @return the packed moves in scan order.
+     */
+    public int[] suggestMoves ( ) {
+        MoveList list = new MoveList();
+        generateMoves( list );
+        return list.toArray();
+    }
+    //-----------------------------------------------------------------------
+    /** fill list (after clearing it) with all possible moves of the player
+     *  whose turn it is, including the captured piece and the JUMP, TRAP
+     *  and DEN flags (see Move). there are none if the game is over.
+     *  nothing is allocated.
+     *  @return the number of moves.
+     */
+    public int generateMoves ( MoveList list ) {
+        list.clear();
+        if (gameOver())  return 0;
+        GameColor turn = bluesTurn ? GameColor.Blue : GameColor.Red;
+        for (int from = 0; from < fRows * fCols; from++) {
+            Piece p = piece[ from / fCols ][ from % fCols ];
+            if (getColor( p ) != turn)  continue;
+            for (int to : MoveTables.NEIGHBOURS[ from ]) {
+                if (isValidMove( from, to ))  list.add( encode( from, to, 0 ) );
+            }
+            int rank = getRank( p );
+            if (rank != 6 && rank != 7)  continue;
+            for (int to : MoveTables.JUMPS[ from ]) {
+                if (isValidMove( from, to ))  list.add( encode( from, to, Move.JUMP ) );
+            }
+        }
+        return list.size();
+    }
+    //-----------------------------------------------------------------------
+    /** @return the packed move from square from to square to, with the
+     *  captured piece and the TRAP and DEN flags added to flags.
+     */
+    private int encode ( int from, int to, int flags ) {
+        Piece captured = piece[ to / fCols ][ to % fCols ];
+        long toBit = 1L << to;
+        if (getRank( captured ) != 0 && (MoveTables.TRAPS & toBit) != 0)  flags |= Move.TRAP;
+        if ((MoveTables.DENS & toBit) != 0)  flags |= Move.DEN;
+        return Move.of( from, to, captured, flags );
+    }
+    //-----------------------------------------------------------------------
+    /** write list to the file out. a name ending in PositionFile.EXTENSION
+     *  (".dsqb") selects the compact binary format (see PositionFile);
+     *  anything else uses java serialization.
+     */
     public static void serialize ( String out, ArrayList< Board > list ) {
+        if (PositionFile.isPositionFile( out )) {
+            try {
+                PositionFile.write( Paths.get( out ), list );
+            } catch (Exception e) {
+                System.err.println( "MyBoard.serialize: failed to write position file " + e );
+            }
+            return;
+        }
         FileOutputStream fout;
         try {
             fout = new FileOutputStream( out );
@@ -630,11 +889,11 @@ public class Board implements Serializable {
         }
 
         //save toString versions of the Boards as well.
-        String s = "\n\n";
-        for (Board b : list)    s += b;
-        s += "\n";
+        StringBuilder s = new StringBuilder( "\n\n" );
+        for (Board b : list)    s.append( b );
+        s.append( "\n" );
         try {
-            oout.writeObject( s );
+            oout.writeObject( s.toString() );
         } catch (Exception e) {
             System.err.println( "MyBoard.serialize: failed to write object(s) " + e );
             return;
@@ -646,8 +905,19 @@ public class Board implements Serializable {
         } catch (Exception ignored) { }
     }
     //-----------------------------------------------------------------------
+    /** read the list written by serialize from the file in (the format is
+     *  selected by the name, as for serialize).
+     */
     @SuppressWarnings( "unchecked" )  //should use try-catch instead but i'm lazy.
     public static ArrayList< Board > deserialize ( String in ) {
+        if (PositionFile.isPositionFile( in )) {
+            try {
+                return PositionFile.read( Paths.get( in ) );
+            } catch (Exception e) {
+                System.err.println( "MyBoard.deserialize: failed to read position file " + e );
+                return null;
+            }
+        }
         FileInputStream fin;
         try {
             fin = new FileInputStream( in );
@@ -688,19 +958,48 @@ public class Board implements Serializable {
         return list;
     }
     //=======================================================================
-    /** call suggest() and choose the best from the last.
-     *  to start, you may choose one at random but you will NOT receive any
-     *  credit for that approach.
-     *  @return the best
-     *  @todo v7
+    /** call suggest() and choose the best from the list, i.e., the child
+     *  with the best h. this is a one ply search (see chooseBest(SearchLimits)).
+     *  @return the best (or null if there are no moves)
      */
     public Board chooseBest ( ) {
-        ArrayList< Board > list = suggest();
-        Board best = null;
-
-        //todo: add your code here.
-        // call h for each element in list and pick the best.
-
+        return chooseBest( new SearchLimits().depth( 1 ).table( OnePly.TABLE ) );
+    }
+    //-----------------------------------------------------------------------
+    /** The transposition table of all one ply chooseBest calls (of any
+     *  thread), made on first use instead of one per call.
+     */
+    private static final class OnePly {
+        static final TranspositionTable  TABLE = new TranspositionTable( 1 );
+    }
+    //-----------------------------------------------------------------------
+    /** play a move of the opening book of the limits (if any, and if it has
+     *  one for this position), otherwise search this position (see Search,
+     *  or ParallelSearch for more than one thread) within the given limits
+     *  and play the best move found.
+     *  @return a new Board after the best move (or null if there are no moves)
+     */
+    public Board chooseBest ( SearchLimits limits ) {
+        if (limits.book() != null) {
+            int m = limits.book().probe( this );
+            if (m != Move.NONE) {
+                Board next = new Board( this );
+                next.doMove( Move.fromRow( m ), Move.fromCol( m ), Move.toRow( m ), Move.toCol( m ) );
+                return next;
+            }
+        }
+        SearchResult result;
+        if (limits.threads() > 1) {
+            try (ParallelSearch search = new ParallelSearch( limits )) {
+                result = search.search( this );
+            }
+        } else {
+            result = new Search( limits ).search( this );
+        }
+        int m = result.bestMove();
+        if (m == Move.NONE)  return null;
+        Board best = new Board( this );
+        best.doMove( Move.fromRow( m ), Move.fromCol( m ), Move.toRow( m ), Move.toCol( m ) );
         return best;
     }
 
@@ -737,7 +1036,7 @@ public class Board implements Serializable {
             // [-INF,        ..., +INF]
             // [blue winner, ..., red winner]
             // [red loser,   ..., red winner]
-            //Evaluate e = new Evaluate( b );
+            return -b.evaluation();
         } else {  //it's reds turn next (after this)
             //eval for blue (because blue moved to get to this position)
             if (b.isBlueWinner())  return INF;
@@ -746,9 +1045,8 @@ public class Board implements Serializable {
             // [-INF,       ..., +INF]
             // [red winner, ..., blue winner]
             // [blue loser, ..., blue winner]
-            //Evaluate e = new Evaluate( b );
+            return b.evaluation();
         }
-        return 0;
     }
 
 }  //end class Board
@@ -0,0 +1,75 @@
+package com.dsq2022.game;
+
+/**
+ * Static evaluation terms for h, designed to be updated incrementally.
+ *
+ * Every term depends on just one piece and its square: material (by rank),
+ * advancement towards the opponent's den (by distance), a penalty for
+ * standing on a trap (where, with universal traps, any opponent beside it
+ * can capture it) and a bonus for a rat in the water (where only the other
+ * rat can reach it). So the evaluation of a Board is a sum over its
+ * pieces, and Board keeps that sum up to date by adding/subtracting
+ * value(p, sq) as pieces are placed and removed (see Board.evaluation).
+ *
+ * Values are from blue's point of view (blue pieces count +, red ones -).
+ *
+ * With -Ddsq.eval.debug=true, Board.evaluation recomputes the sum from
+ * scratch (full) on every call and fails if the incremental value differs.
+ */
+public final class Evaluator {
+    /// cross-check the incremental evaluation with full on every call (slow).
+    public static final boolean DEBUG = Boolean.getBoolean( "dsq.eval.debug" );
+
+    /// material by rank (rat, cat, dog, wolf, leopard, tiger, lion, elephant).
+    private static final int[] MATERIAL = { 0, 400, 200, 300, 400, 500, 800, 900, 1000 };
+    /// bonus by distance (rows + cols) to the opponent's den.
+    private static final int[] ADVANCE = { 0, 200, 120, 80, 50, 30, 20, 12, 8, 4, 2, 0 };
+    private static final int   ON_TRAP = -40;       ///< standing on a trap
+    private static final int   RAT_IN_WATER = 20;   ///< a rat in the water
+
+    private static final int   SQUARES = BitBoard.SQUARES;
+
+    /// VALUE[ piece.ordinal() ][ sq ]: the (signed) value of that piece on that square.
+    private static final int[][] VALUE = new int[ Piece.values().length ][ SQUARES ];
+
+    static {
+        int fCols = BitBoard.fCols;
+        int redDen = Long.numberOfTrailingZeros( BitBoard.RED_DEN );
+        int blueDen = Long.numberOfTrailingZeros( BitBoard.BLUE_DEN );
+        for (Piece p : Piece.values()) {
+            int rank = Board.getRank( p );
+            if (rank == 0)  continue;
+            boolean blue = Board.getColor( p ) == GameColor.Blue;
+            int den = blue ? redDen : blueDen;  //the opponent's den
+            for (int sq = 0; sq < SQUARES; sq++) {
+                long bit = 1L << sq;
+                int dist = Math.abs( sq / fCols - den / fCols ) + Math.abs( sq % fCols - den % fCols );
+                int v = MATERIAL[ rank ] + ADVANCE[ Math.min( dist, ADVANCE.length - 1 ) ];
+                if ((BitBoard.TRAPS & bit) != 0)  v += ON_TRAP;
+                if (rank == 1 && (BitBoard.WATER & bit) != 0)  v += RAT_IN_WATER;
+                VALUE[ p.ordinal() ][ sq ] = blue ? v : -v;
+            }
+        }
+    }
+
+    private Evaluator ( ) { }
+    //-----------------------------------------------------------------------
+    /** @return the (signed, blue +) value of piece p (null or rbNone for
+     *  none) on square sq.
+     */
+    public static int value ( Piece p, int sq ) {
+        return (p == null) ? 0 : VALUE[ p.ordinal() ][ sq ];
+    }
+    //-----------------------------------------------------------------------
+    /** @return the evaluation of b from scratch (blue +, red -). */
+    public static int full ( Board b ) {
+        int v = 0;
+        for (int r = 0; r < Board.fRows; r++) {
+            for (int c = 0; c < Board.fCols; c++) {
+                v += value( b.getPiece( r, c ), r * Board.fCols + c );
+            }
+        }
+        return v;
+    }
+
+}  //end class Evaluator
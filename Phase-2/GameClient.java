@@ -0,0 +1,122 @@
+package com.dsq2022.game;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A (blocking) client of a GameServer: request sends one line and returns
+ * the reply line. Not thread safe; use one per thread.
+ *
+ * main drives a server with random games: connections threads each start
+ * games games and play one random move in each of them in turn (asking the
+ * server for the moves) until they are over or maxPlies plies long, so
+ * connections * games games are open at the same time.
+ */
+public final class GameClient implements AutoCloseable {
+    private final Socket          socket;
+    private final BufferedReader  in;
+    private final Writer          out;
+    //=======================================================================
+    public GameClient ( String host, int port ) throws IOException {
+        this.socket = new Socket( host, port );
+        socket.setTcpNoDelay( true );
+        this.in = new BufferedReader( new InputStreamReader( socket.getInputStream(), StandardCharsets.US_ASCII ) );
+        this.out = new OutputStreamWriter( socket.getOutputStream(), StandardCharsets.US_ASCII );
+    }
+    //-----------------------------------------------------------------------
+    /** @return the server's reply to line (see GameServer). */
+    public String request ( String line ) throws IOException {
+        out.write( line );
+        out.write( '\n' );
+        out.flush();
+        String reply = in.readLine();
+        if (reply == null)  throw new IOException( "connection closed" );
+        return reply;
+    }
+    //-----------------------------------------------------------------------
+    @Override
+    public void close ( ) throws IOException {
+        socket.close();
+    }
+    //=======================================================================
+    /** play games random games at once on c until each is over or maxPlies
+     *  plies long, counting the moves and finished games.
+     */
+    private static void play ( GameClient c, int games, int maxPlies, Random rnd,
+                               AtomicLong moves, AtomicLong finished ) throws IOException {
+        List< String > open = new ArrayList<>();
+        for (int i = 0; i < games; i++) {
+            String reply = c.request( "new" );
+            if (!reply.startsWith( "ok " ))  throw new IOException( reply );
+            open.add( reply.split( " " )[ 1 ] );
+        }
+        for (int ply = 0; ply < maxPlies && !open.isEmpty(); ply++) {
+            for (int i = open.size() - 1; i >= 0; i--) {
+                String id = open.get( i );
+                String[] w = c.request( "moves " + id ).split( " " );
+                String reply = "over";
+                if (w.length > 1) {
+                    String m = w[ 1 + rnd.nextInt( w.length - 1 ) ].replace( ',', ' ' ).replace( '-', ' ' );
+                    reply = c.request( "move " + id + " " + m );
+                    if (reply.startsWith( "err" ))  throw new IOException( reply );
+                    moves.incrementAndGet();
+                }
+                if (reply.startsWith( "over" ) || ply == maxPlies - 1) {
+                    c.request( "end " + id );
+                    open.remove( i );
+                    finished.incrementAndGet();
+                }
+            }
+        }
+    }
+    //-----------------------------------------------------------------------
+    /** GameClient [-host h] [-port n] [-connections n] [-games n] [-plies n] */
+    public static void main ( String[] args ) throws InterruptedException {
+        String host = "localhost";
+        int port = 7022, connections = 50, games = 200, plies = 100;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[ i ]) {
+                case "-host":         host = args[ ++i ];  break;
+                case "-port":         port = Integer.parseInt( args[ ++i ] );  break;
+                case "-connections":  connections = Integer.parseInt( args[ ++i ] );  break;
+                case "-games":        games = Integer.parseInt( args[ ++i ] );  break;
+                case "-plies":        plies = Integer.parseInt( args[ ++i ] );  break;
+                default:
+                    System.err.println( "usage: GameClient [-host h] [-port n] [-connections n] [-games n] [-plies n]" );
+                    System.exit( 1 );
+            }
+        }
+        AtomicLong moves = new AtomicLong(), finished = new AtomicLong();
+        long start = System.currentTimeMillis();
+        List< Thread > threads = new ArrayList<>();
+        for (int i = 0; i < connections; i++) {
+            final String h = host;
+            final int p = port, g = games, n = plies;
+            final long seed = i;
+            Thread t = new Thread( () -> {
+                try (GameClient c = new GameClient( h, p )) {
+                    play( c, g, n, new Random( seed ), moves, finished );
+                    c.request( "quit" );
+                } catch (IOException e) {
+                    System.err.println( "connection failed: " + e.getMessage() );
+                }
+            }, "game-client-" + i );
+            t.start();
+            threads.add( t );
+        }
+        for (Thread t : threads)  t.join();
+        long ms = Math.max( 1, System.currentTimeMillis() - start );
+        System.out.println( finished + " games, " + moves + " moves in " + ms + " ms ("
+                            + moves.get() * 1000 / ms + " moves/s)" );
+    }
+
+}  //end class GameClient
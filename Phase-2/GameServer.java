@@ -0,0 +1,380 @@
+package com.dsq2022.game;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Hosts many games at once for clients on TCP (see GameClient).
+ *
+ * A game is kept as its PositionCodec encoding (two longs), its ply count
+ * and the time it was last played (about 32 bytes a game, in flat arrays of
+ * maxGames entries), so even 100,000 games take a few MB. A move decodes the
+ * Board, checks and plays it with doMove and stores it back; gameOver ends
+ * the game. Games are not tied to a connection: anyone with the id of a
+ * game may play it. A game that is not played for idleMillis ms is dropped.
+ *
+ * One thread serves all connections with a non-blocking Selector. The
+ * protocol is one ASCII line per request (at most MAX_LINE bytes) and one
+ * line per reply, in order:
+ * <pre>
+ *   new                          ok id board
+ *   move id fromRow fromCol toRow toCol
+ *                                ok board  |  over red|blue board
+ *   show id                      ok board
+ *   moves id                     ok fromRow,fromCol-toRow,toCol ...
+ *   end id                       ok
+ *   quit                         bye  (and the connection is closed)
+ * </pre>
+ * where board is RenderStyle.COMPACT (with a space before the turn). Any
+ * error is answered with "err" and a message. A client that sends a line
+ * that is too long, or does not read its replies (MAX_OUTPUT bytes pending),
+ * is disconnected.
+ */
+public final class GameServer implements AutoCloseable {
+    public static final int   MAX_LINE = 256;  ///< bytes in a request line
+    public static final int   MAX_OUTPUT = 64 * 1024;  ///< pending reply bytes per connection
+    private static final int  SLOT_BITS = 24;  ///< game id = generation << SLOT_BITS | slot
+    private static final long SWEEP_MILLIS = 1000;  ///< how often idle games are dropped
+
+    private final ServerSocketChannel  server;
+    private final Selector             selector;
+    private final Thread               thread;
+    private final long                 idleMillis;
+
+    /// the games, by slot; a free slot has plies -1 and is on the free list.
+    private final long[]  hi, lo, touched;
+    private final int[]   plies, generation, free;
+    private int           freeCount;
+    private volatile int  games;  ///< written by the server thread only
+    private long          nextSweep;
+    //=======================================================================
+    /** listen on port (0 for any free one, see port) with room for maxGames
+     *  games, dropping games idle for idleMillis ms; serving starts at once
+     *  on a daemon thread.
+     */
+    public GameServer ( int port, int maxGames, long idleMillis ) throws IOException {
+        if (maxGames < 1 || maxGames > (1 << SLOT_BITS))  throw new IllegalArgumentException( "bad maxGames " + maxGames );
+        this.idleMillis = idleMillis;
+        this.hi = new long[ maxGames ];
+        this.lo = new long[ maxGames ];
+        this.touched = new long[ maxGames ];
+        this.plies = new int[ maxGames ];
+        this.generation = new int[ maxGames ];
+        this.free = new int[ maxGames ];
+        Arrays.fill( plies, -1 );
+        for (int i = 0; i < maxGames; i++)  free[ i ] = maxGames - 1 - i;
+        this.freeCount = maxGames;
+
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        server.bind( new InetSocketAddress( port ), 1024 );
+        server.configureBlocking( false );
+        server.register( selector, SelectionKey.OP_ACCEPT );
+        this.thread = new Thread( this::serve, "game-server" );
+        thread.setDaemon( true );
+        thread.start();
+    }
+    //-----------------------------------------------------------------------
+    /** @return the port listened on. */
+    public int port ( ) {
+        return server.socket().getLocalPort();
+    }
+    //-----------------------------------------------------------------------
+    /** @return the number of games. */
+    public int games ( ) {
+        return games;
+    }
+    //-----------------------------------------------------------------------
+    /** stop serving and close all connections. */
+    @Override
+    public void close ( ) throws IOException {
+        thread.interrupt();
+        selector.wakeup();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    //=======================================================================
+    /** A client connection: its partial request line and pending replies. */
+    private static final class Connection {
+        final ByteBuffer  in = ByteBuffer.allocate( MAX_LINE );
+        ByteBuffer        out = ByteBuffer.allocate( 1024 );  ///< grows up to MAX_OUTPUT
+        boolean           closing;  ///< close once out is written
+    }
+    //-----------------------------------------------------------------------
+    /** the server thread: serve until interrupted. */
+    private void serve ( ) {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                selector.select( SWEEP_MILLIS );
+                Iterator< SelectionKey > it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    try {
+                        if (key.isReadable())  read( key );
+                        if (key.isValid() && key.isWritable())  write( key );
+                    } catch (IOException e) {
+                        disconnect( key );
+                    }
+                }
+                long now = System.currentTimeMillis();
+                if (now >= nextSweep) {
+                    sweep( now );
+                    nextSweep = now + SWEEP_MILLIS;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException( e );
+        } finally {
+            for (SelectionKey key : selector.keys())  disconnect( key );
+            try {
+                selector.close();
+                server.close();
+            } catch (IOException e) {
+                //closing anyway
+            }
+        }
+    }
+    //-----------------------------------------------------------------------
+    /** accept the waiting connections (a failed one is just dropped). */
+    private void accept ( ) {
+        while (true) {
+            SocketChannel ch = null;
+            try {
+                ch = server.accept();
+                if (ch == null)  return;
+                ch.configureBlocking( false );
+                ch.setOption( StandardSocketOptions.TCP_NODELAY, true );
+                ch.register( selector, SelectionKey.OP_READ, new Connection() );
+            } catch (IOException e) {
+                if (ch == null)  return;
+                try {
+                    ch.close();
+                } catch (IOException e2) {
+                    //gone anyway
+                }
+            }
+        }
+    }
+    //-----------------------------------------------------------------------
+    private static void disconnect ( SelectionKey key ) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            //gone anyway
+        }
+    }
+    //-----------------------------------------------------------------------
+    /** read what is there and answer each complete line. */
+    private void read ( SelectionKey key ) throws IOException {
+        Connection conn = (Connection) key.attachment();
+        SocketChannel ch = (SocketChannel) key.channel();
+        if (ch.read( conn.in ) < 0) {
+            disconnect( key );
+            return;
+        }
+        ByteBuffer in = conn.in;
+        in.flip();
+        int start = 0;
+        for (int i = 0; i < in.limit() && !conn.closing; i++) {
+            if (in.get( i ) != '\n')  continue;
+            int end = (i > start && in.get( i - 1 ) == '\r') ? i - 1 : i;
+            String line = new String( in.array(), start, end - start, StandardCharsets.US_ASCII );
+            reply( conn, handle( conn, line.trim() ) );
+            start = i + 1;
+        }
+        in.position( start );
+        in.compact();
+        if (!in.hasRemaining() && !conn.closing) {  //no end of line in MAX_LINE bytes
+            reply( conn, "err line too long" );
+            conn.closing = true;
+        }
+        if (conn.out.position() > 0 || conn.closing)  write( key );
+    }
+    //-----------------------------------------------------------------------
+    /** queue line (and a newline) to be sent on conn. */
+    private static void reply ( Connection conn, String line ) {
+        int n = line.length() + 1;
+        if (conn.out.remaining() < n) {
+            int size = conn.out.capacity();
+            while (size - conn.out.position() < n)  size *= 2;
+            if (size > MAX_OUTPUT) {  //not reading its replies
+                conn.closing = true;
+                return;
+            }
+            ByteBuffer bigger = ByteBuffer.allocate( size );
+            conn.out.flip();
+            bigger.put( conn.out );
+            conn.out = bigger;
+        }
+        for (int i = 0; i < line.length(); i++)  conn.out.put( (byte) line.charAt( i ) );
+        conn.out.put( (byte) '\n' );
+    }
+    //-----------------------------------------------------------------------
+    /** send what is pending; wait for OP_WRITE if not all of it goes. */
+    private static void write ( SelectionKey key ) throws IOException {
+        Connection conn = (Connection) key.attachment();
+        conn.out.flip();
+        ((SocketChannel) key.channel()).write( conn.out );
+        conn.out.compact();
+        if (conn.out.position() > 0) {
+            key.interestOps( SelectionKey.OP_READ | SelectionKey.OP_WRITE );
+        } else if (conn.closing) {
+            disconnect( key );
+        } else {
+            key.interestOps( SelectionKey.OP_READ );
+        }
+    }
+    //=======================================================================
+    /** @return the reply to the request line. */
+    private String handle ( Connection conn, String line ) {
+        String[] w = line.split( "\\s+" );
+        try {
+            switch (w[ 0 ]) {
+                case "new":    return newGame();
+                case "move":
+                    if (w.length != 6)  return "err usage: move id fromRow fromCol toRow toCol";
+                    return move( slot( w[ 1 ] ), Integer.parseInt( w[ 2 ] ), Integer.parseInt( w[ 3 ] ),
+                                 Integer.parseInt( w[ 4 ] ), Integer.parseInt( w[ 5 ] ) );
+                case "show":   return "ok " + render( board( slot( w ) ) );
+                case "moves":  return moves( slot( w ) );
+                case "end":
+                    release( slot( w ) );
+                    return "ok";
+                case "quit":
+                    conn.closing = true;
+                    return "bye";
+                default:       return "err unknown request: " + w[ 0 ];
+            }
+        } catch (NumberFormatException e) {
+            return "err not a number: " + e.getMessage();
+        } catch (IllegalArgumentException e) {
+            return "err " + e.getMessage();
+        }
+    }
+    //-----------------------------------------------------------------------
+    private int slot ( String[] w ) {
+        if (w.length != 2)  throw new IllegalArgumentException( "usage: " + w[ 0 ] + " id" );
+        return slot( w[ 1 ] );
+    }
+    //-----------------------------------------------------------------------
+    /** @return the slot of the game with the given id. */
+    private int slot ( String id ) {
+        long n = Long.parseLong( id );
+        int slot = (int) (n & ((1 << SLOT_BITS) - 1));
+        if (n < 0 || slot >= plies.length || plies[ slot ] < 0 || generation[ slot ] != (n >>> SLOT_BITS)) {
+            throw new IllegalArgumentException( "no game " + id );
+        }
+        return slot;
+    }
+    //-----------------------------------------------------------------------
+    private String newGame ( ) {
+        if (freeCount == 0)  return "err server full";
+        int slot = free[ --freeCount ];
+        Board b = new Board();
+        store( slot, b );
+        plies[ slot ] = 0;
+        games++;
+        long id = ((long) generation[ slot ] << SLOT_BITS) | slot;
+        return "ok " + id + " " + render( b );
+    }
+    //-----------------------------------------------------------------------
+    private String move ( int slot, int fromRow, int fromCol, int toRow, int toCol ) {
+        Board b = board( slot );
+        if (b.gameOver())  return "err game over";
+        if (fromRow < 0 || fromRow >= Board.fRows || fromCol < 0 || fromCol >= Board.fCols
+            || toRow < 0 || toRow >= Board.fRows || toCol < 0 || toCol >= Board.fCols
+            || !b.doMove( fromRow, fromCol, toRow, toCol )) {
+            return "err invalid move";
+        }
+        store( slot, b );
+        plies[ slot ]++;
+        if (!b.gameOver())  return "ok " + render( b );
+        return "over " + (b.isBlueWinner() ? "blue " : "red ") + render( b );
+    }
+    //-----------------------------------------------------------------------
+    private String moves ( int slot ) {
+        Board b = board( slot );
+        StringBuilder sb = new StringBuilder( "ok" );
+        if (b.gameOver())  return sb.toString();
+        for (int m : b.suggestMoves()) {
+            sb.append( ' ' ).append( Move.fromRow( m ) ).append( ',' ).append( Move.fromCol( m ) )
+              .append( '-' ).append( Move.toRow( m ) ).append( ',' ).append( Move.toCol( m ) );
+        }
+        return sb.toString();
+    }
+    //-----------------------------------------------------------------------
+    private Board board ( int slot ) {
+        touched[ slot ] = System.currentTimeMillis();
+        return PositionCodec.decode( hi[ slot ], lo[ slot ] );
+    }
+    //-----------------------------------------------------------------------
+    private void store ( int slot, Board b ) {
+        hi[ slot ] = PositionCodec.hi( b );
+        lo[ slot ] = PositionCodec.lo( b );
+        touched[ slot ] = System.currentTimeMillis();
+    }
+    //-----------------------------------------------------------------------
+    /** drop the game in slot (so its id is no longer valid). */
+    private void release ( int slot ) {
+        plies[ slot ] = -1;
+        generation[ slot ] = (generation[ slot ] + 1) & 0x7FFFFFFF;
+        free[ freeCount++ ] = slot;
+        games--;
+    }
+    //-----------------------------------------------------------------------
+    /** drop the games idle since before now - idleMillis. */
+    private void sweep ( long now ) {
+        for (int slot = 0; slot < plies.length; slot++) {
+            if (plies[ slot ] >= 0 && now - touched[ slot ] > idleMillis)  release( slot );
+        }
+    }
+    //-----------------------------------------------------------------------
+    private static String render ( Board b ) {
+        StringBuilder sb = new StringBuilder( 40 );
+        try {
+            b.render( sb, RenderStyle.COMPACT );
+        } catch (IOException e) {
+            throw new UncheckedIOException( e );  //a StringBuilder doesn't throw
+        }
+        return sb.toString();
+    }
+    //=======================================================================
+    /** run a server until killed: GameServer [-port n] [-games n] [-idle s] */
+    public static void main ( String[] args ) throws IOException, InterruptedException {
+        int port = 7022, maxGames = 100_000;
+        long idle = 600;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[ i ]) {
+                case "-port":   port = Integer.parseInt( args[ ++i ] );  break;
+                case "-games":  maxGames = Integer.parseInt( args[ ++i ] );  break;
+                case "-idle":   idle = Long.parseLong( args[ ++i ] );  break;
+                default:
+                    System.err.println( "usage: GameServer [-port n] [-games n] [-idle seconds]" );
+                    System.exit( 1 );
+            }
+        }
+        GameServer s = new GameServer( port, maxGames, idle * 1000 );
+        System.out.println( "listening on port " + s.port() );
+        s.thread.join();
+    }
+
+}  //end class GameServer
@@ -0,0 +1,113 @@
+package com.dsq2022.game;
+
+/**
+ * Win/draw/loss counts of a match (from the point of view of the first
+ * engine) and the statistics used to judge an engine change:
+ * <ul>
+ * <li>elo: the logistic Elo difference of the score, with a 95% error
+ *     margin (normal approximation);</li>
+ * <li>llr: the log-likelihood ratio of the sequential probability ratio
+ *     test (SPRT) of H0 "the difference is elo0" against H1 "it is elo1",
+ *     with the usual (trinomial, normal) approximation; see sprt for the
+ *     decision with error rates alpha and beta.</li>
+ * </ul>
+ * Thread safe.
+ */
+public final class MatchStats {
+    private long  wins, draws, losses;
+    //-----------------------------------------------------------------------
+    /** count a game with the given score for the first engine (1, 0.5 or 0). */
+    public synchronized void add ( double score ) {
+        if (score == 1)         wins++;
+        else if (score == 0)    losses++;
+        else if (score == 0.5)  draws++;
+        else  throw new IllegalArgumentException( "score must be 0, 0.5 or 1: " + score );
+    }
+    //-----------------------------------------------------------------------
+    public synchronized long wins ( ) {
+        return wins;
+    }
+    //-----------------------------------------------------------------------
+    public synchronized long draws ( ) {
+        return draws;
+    }
+    //-----------------------------------------------------------------------
+    public synchronized long losses ( ) {
+        return losses;
+    }
+    //-----------------------------------------------------------------------
+    public synchronized long games ( ) {
+        return wins + draws + losses;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the mean score (0.5 if there are no games). */
+    public synchronized double score ( ) {
+        long n = games();
+        return (n == 0) ? 0.5 : (wins + 0.5 * draws) / n;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the variance of the score of one game. */
+    private double variance ( ) {
+        long n = games();
+        if (n == 0)  return 0;
+        double s = score();
+        return (wins * (1 - s) * (1 - s) + draws * (0.5 - s) * (0.5 - s) + losses * s * s) / n;
+    }
+    //=======================================================================
+    /** @return the Elo difference of score s (clamped to +/-999). */
+    private static double elo ( double s ) {
+        if (s <= 0)  return -999;
+        if (s >= 1)  return 999;
+        return Math.max( -999, Math.min( 999, -400 * Math.log10( 1 / s - 1 ) ) );
+    }
+    //-----------------------------------------------------------------------
+    /** @return the expected score of an Elo difference. */
+    private static double expected ( double elo ) {
+        return 1 / (1 + Math.pow( 10, -elo / 400 ));
+    }
+    //-----------------------------------------------------------------------
+    /** @return the Elo difference of the first engine. */
+    public synchronized double elo ( ) {
+        return elo( score() );
+    }
+    //-----------------------------------------------------------------------
+    /** @return the half width of the 95% confidence interval of elo(). */
+    public synchronized double eloError ( ) {
+        long n = games();
+        if (n < 2)  return 999;
+        double s = score(), margin = 1.96 * Math.sqrt( variance() / n );
+        return (elo( s + margin ) - elo( s - margin )) / 2;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the SPRT log-likelihood ratio of H1 (elo1) against H0 (elo0).
+     *  the score and its variance are estimated with half a game of each
+     *  result added, so a one-sided start (e.g., all wins) still counts.
+     */
+    public synchronized double llr ( double elo0, double elo1 ) {
+        long n = games();
+        if (n == 0)  return 0;
+        double w = wins + 0.5, d = draws + 0.5, l = losses + 0.5, total = w + d + l;
+        double s = (w + 0.5 * d) / total;
+        double var = (w * (1 - s) * (1 - s) + d * (0.5 - s) * (0.5 - s) + l * s * s) / total;
+        double s0 = expected( elo0 ), s1 = expected( elo1 );
+        return n * (s1 - s0) * (2 * s - s0 - s1) / (2 * var);
+    }
+    //-----------------------------------------------------------------------
+    /** @return 1 if the SPRT accepts H1 (elo1), -1 if it accepts H0 (elo0),
+     *  0 if more games are needed, for false positive rate alpha and false
+     *  negative rate beta.
+     */
+    public synchronized int sprt ( double elo0, double elo1, double alpha, double beta ) {
+        double llr = llr( elo0, elo1 );
+        if (llr >= Math.log( (1 - beta) / alpha ))  return 1;
+        if (llr <= Math.log( beta / (1 - alpha) ))  return -1;
+        return 0;
+    }
+    //-----------------------------------------------------------------------
+    @Override
+    public synchronized String toString ( ) {
+        return String.format( "games %d +%d =%d -%d score %.3f elo %.1f +/- %.1f",
+                              games(), wins, draws, losses, score(), elo(), eloError() );
+    }
+
+}  //end class MatchStats
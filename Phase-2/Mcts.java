@@ -0,0 +1,396 @@
+package com.dsq2022.game;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Monte Carlo Tree Search (PUCT), an alternative to the alpha-beta Search.
+ *
+ * Each playout walks down the tree from the root, at each node taking the
+ * child with the best Q + C * P * sqrt(N) / (1 + n), where Q is the mean
+ * value of the child, n its visits, N the visits of the node and P the
+ * child's prior: a softmax of h of the children, so moves that look good
+ * are tried first. At the first node not yet expanded its children are
+ * added, and it is valued by h (after rolloutPlies random plies, 0 by
+ * default), squashed into a win probability, 1 / (1 + e^(-h / SCALE)).
+ * Finished games are worth 1 or 0. The value is then added to every node on
+ * the way back (flipped at each ply: the value of a node is for the player
+ * who moved into it).
+ *
+ * The tree is stored in parallel arrays (an arena of at most capacity
+ * nodes, the children of a node being consecutive), not as objects. The
+ * limits' threads all run playouts on the one tree (each on its own
+ * Board), with a virtual loss: a node being walked through counts as a
+ * visit that lost until the playout is backed up, which steers the other
+ * threads elsewhere.
+ *
+ * The tree is kept between searches: if the new root is a child or a
+ * grandchild of the last one (i.e., after our move and the reply), the
+ * search goes on from that subtree. The tree is cleared when it is
+ * (nearly) full.
+ *
+ * Limits: nodes() is the number of playouts per search (DEFAULT_PLAYOUTS
+ * if 0), threads() the number of threads and hashMegabytes() the size of
+ * the arena; a time (moveMillis or clock) ends the search at its hard
+ * deadline (see TimeManager); the depth is not used. Not thread safe
+ * (except stop).
+ */
+public final class Mcts implements AutoCloseable {
+    public static final int     DEFAULT_PLAYOUTS = 50_000;
+    public static final double  SCALE = 400;        ///< h units per e-fold of the win odds
+    public static final double  C = 1.5;            ///< exploration
+    public static final double  PRIOR_SCALE = 200;  ///< h units per e-fold of the prior
+    private static final int    BYTES_PER_NODE = 36;
+    private static final long   ONE = 1L << 20;     ///< fixed point 1.0 of the value sums
+    private static final int    MAX_PLY = 256;
+
+    private static final int    UNEXPANDED = 0, EXPANDING = 1, EXPANDED = 2;
+
+    private final SearchLimits  limits;
+    private final int           capacity;
+    private int                 rolloutPlies = 0;
+
+    //the arena
+    private final int[]               firstChild;  ///< index of the first child
+    private final int[]               children;    ///< no. of children
+    private final int[]               move;        ///< the move into the node
+    private final float[]             prior;
+    private final AtomicIntegerArray  visits;      ///< including virtual losses
+    private final AtomicLongArray     value;       ///< sum of values, fixed point
+    private final AtomicIntegerArray  state;       ///< UNEXPANDED, EXPANDING, EXPANDED
+    private final AtomicInteger       used = new AtomicInteger();
+
+    private int    root = -1;
+    private Board  rootBoard;
+
+    private final AtomicBoolean    stopSignal = new AtomicBoolean();
+    private final AtomicLong       playouts = new AtomicLong();
+    private final ExecutorService  pool;
+    //=======================================================================
+    public Mcts ( SearchLimits limits ) {
+        this.limits = limits;
+        this.capacity = (int) Math.min( Integer.MAX_VALUE - 8, (long) limits.hashMegabytes() * (1 << 20) / BYTES_PER_NODE );
+        firstChild = new int[ capacity ];
+        children = new int[ capacity ];
+        move = new int[ capacity ];
+        prior = new float[ capacity ];
+        visits = new AtomicIntegerArray( capacity );
+        value = new AtomicLongArray( capacity );
+        state = new AtomicIntegerArray( capacity );
+        int n = limits.threads();
+        this.pool = (n == 1) ? null : Executors.newFixedThreadPool( n - 1, r -> {
+            Thread t = new Thread( r, "mcts-helper" );
+            t.setDaemon( true );
+            return t;
+        } );
+    }
+    //-----------------------------------------------------------------------
+    /** value leaves after this many random plies (0: by h at once). */
+    public Mcts rolloutPlies ( int plies ) {
+        if (plies < 0)  throw new IllegalArgumentException( "plies must be >= 0: " + plies );
+        this.rolloutPlies = plies;
+        return this;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the number of nodes in the arena. */
+    public int size ( ) {
+        return Math.min( used.get(), capacity );
+    }
+    //-----------------------------------------------------------------------
+    /** Stop the running search as soon as possible (from any thread). A
+     *  stop before a search started stops that search too, unless it is
+     *  started with search(Board), which forgets it.
+     */
+    public void stop ( ) {
+        stopSignal.set( true );
+    }
+    //-----------------------------------------------------------------------
+    /** forget a stop (see stop and search(Board, long, boolean)). */
+    void clearStop ( ) {
+        stopSignal.set( false );
+    }
+    //-----------------------------------------------------------------------
+    /** stop the helper threads. */
+    @Override
+    public void close ( ) {
+        stop();
+        if (pool != null)  pool.shutdownNow();
+    }
+    //=======================================================================
+    /** Search root (which is not changed).
+     *  @return the most visited move, its value (as a score: SCALE * the
+     *  log odds of winning) and the line of most visited moves.
+     */
+    public SearchResult search ( final Board root ) {
+        return search( root, 0, true );
+    }
+    //-----------------------------------------------------------------------
+    /** Search root within the limits and at most millis ms (0 for no more
+     *  than the limits). with clearStop false, a stop that came before this
+     *  call is kept (see Search.search(Board, long, boolean)). interrupting
+     *  the calling thread stops the search too.
+     */
+    SearchResult search ( final Board root, long millis, boolean clearStop ) {
+        long start = System.currentTimeMillis();
+        if (clearStop)  stopSignal.set( false );
+        playouts.set( 0 );
+        reuse( root );
+        TimeManager time = TimeManager.of( limits, millis );
+        if (time != null)  time.start( stopSignal );
+
+        long target = (limits.nodes() == 0) ? DEFAULT_PLAYOUTS : limits.nodes();
+        int n = limits.threads();
+        List< Future< ? > > helpers = new ArrayList<>( n - 1 );
+        for (int i = 1; i < n; i++) {
+            long seed = i;
+            helpers.add( pool.submit( () -> run( root, target, seed ) ) );
+        }
+        try {
+            run( root, target, 0 );
+            stopSignal.set( true );
+            for (Future< ? > f : helpers) {
+                try {
+                    f.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException( "mcts worker failed", e.getCause() );
+                }
+            }
+        } finally {
+            if (time != null)  time.finish();
+            stopSignal.set( false );  //used up (by the playouts, the deadline or stop)
+        }
+        return result( System.currentTimeMillis() - start );
+    }
+    //-----------------------------------------------------------------------
+    /** make the node of b the root: a child or grandchild of the old root,
+     *  or a new tree.
+     */
+    private void reuse ( Board b ) {
+        int found = -1;
+        if (this.root >= 0 && used.get() < capacity * 3L / 4) {
+            long key = b.zobristKey();
+            if (rootBoard.zobristKey() == key && rootBoard.equals( b )) {
+                found = this.root;
+            } else if (state.get( this.root ) == EXPANDED) {
+                Board c = new Board( rootBoard );
+                int first = firstChild[ this.root ];
+                for (int i = first; i < first + children[ this.root ] && found < 0; i++) {
+                    int u1 = c.makeMove( move[ i ] );
+                    if (c.zobristKey() == key && c.equals( b )) {
+                        found = i;
+                    } else if (state.get( i ) == EXPANDED) {
+                        for (int j = firstChild[ i ]; j < firstChild[ i ] + children[ i ]; j++) {
+                            int u2 = c.makeMove( move[ j ] );
+                            boolean same = c.zobristKey() == key && c.equals( b );
+                            c.unmakeMove( u2 );
+                            if (same) {
+                                found = j;
+                                break;
+                            }
+                        }
+                    }
+                    c.unmakeMove( u1 );
+                }
+            }
+        }
+        if (found < 0) {  //start over
+            used.set( 0 );
+            found = allocate( 1 );
+            move[ found ] = Move.NONE;
+            prior[ found ] = 1;
+        }
+        this.root = found;
+        this.rootBoard = new Board( b );
+    }
+    //-----------------------------------------------------------------------
+    /** @return the first of n new (cleared) nodes, or -1 if the arena is full. */
+    private int allocate ( int n ) {
+        if (used.get() + n > capacity)  return -1;  //(keeps used from growing without bound)
+        int first = used.getAndAdd( n );
+        if (first + n > capacity)  return -1;
+        for (int i = first; i < first + n; i++) {
+            firstChild[ i ] = -1;
+            children[ i ] = 0;
+            visits.set( i, 0 );
+            value.set( i, 0 );
+            state.set( i, UNEXPANDED );
+        }
+        return first;
+    }
+    //=======================================================================
+    /** The buffers of one thread's playouts (nothing is allocated per playout). */
+    private static final class Scratch {
+        final MoveList  moves = new MoveList();
+        final int[]     path = new int[ MAX_PLY + 1 ];
+        final int[]     undo = new int[ MAX_PLY + 1 ];
+        final int[]     rolloutUndo;
+        final double[]  h = new double[ MoveList.CAPACITY ];  ///< of the children, for expand
+
+        Scratch ( int rolloutPlies ) {
+            rolloutUndo = new int[ rolloutPlies ];
+        }
+    }
+    //-----------------------------------------------------------------------
+    /** run playouts (on a copy of root) until target or stopped. */
+    private void run ( Board root, long target, long seed ) {
+        Board b = new Board( root );
+        Random rnd = new Random( seed );
+        Scratch scratch = new Scratch( rolloutPlies );
+        while (!stopSignal.get() && !Thread.currentThread().isInterrupted() && playouts.getAndIncrement() < target) {
+            playout( b, scratch, rnd );
+        }
+    }
+    //-----------------------------------------------------------------------
+    private void playout ( Board b, Scratch scratch, Random rnd ) {
+        int[] path = scratch.path, undo = scratch.undo;
+        MoveList moves = scratch.moves;
+        int node = root;
+        int depth = 0;
+        path[ 0 ] = node;
+        visits.incrementAndGet( node );
+        while (state.get( node ) == EXPANDED && children[ node ] > 0 && depth < MAX_PLY) {
+            node = select( node );
+            visits.incrementAndGet( node );  //the virtual loss (no value yet)
+            undo[ depth ] = b.makeMove( move[ node ] );
+            path[ ++depth ] = node;
+        }
+
+        double v;  //for the player who moved into node
+        if (b.gameOver()) {
+            v = (Board.h( b ) > 0) ? 1 : 0;
+        } else if (b.generateMoves( moves ) == 0) {
+            v = 1;  //the player to move has no move: lost
+        } else {
+            if (state.compareAndSet( node, UNEXPANDED, EXPANDING ))  expand( node, b, moves, scratch.h );
+            v = rollout( b, moves, scratch.rolloutUndo, rnd );
+        }
+
+        for (int d = depth; d >= 0; d--) {
+            value.addAndGet( path[ d ], (long) (v * ONE) );
+            v = 1 - v;
+            if (d > 0)  b.unmakeMove( undo[ d - 1 ] );
+        }
+    }
+    //-----------------------------------------------------------------------
+    /** @return the child of node with the best PUCT score. */
+    private int select ( int node ) {
+        double sqrtN = Math.sqrt( Math.max( 1, visits.get( node ) ) );
+        int first = firstChild[ node ];
+        int best = first;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int i = first; i < first + children[ node ]; i++) {
+            int n = visits.get( i );
+            double q = (n == 0) ? 0.5 : (double) value.get( i ) / ONE / n;
+            double u = q + C * prior[ i ] * sqrtN / (1 + n);
+            if (u > bestScore) {
+                bestScore = u;
+                best = i;
+            }
+        }
+        return best;
+    }
+    //-----------------------------------------------------------------------
+    /** add the children (moves) of node, at b, with their priors (h is
+     *  room for the h of each move).
+     */
+    private void expand ( int node, Board b, MoveList moves, double[] h ) {
+        int n = moves.size();
+        int first = allocate( n );
+        if (first < 0) {  //full: it stays a leaf
+            state.set( node, UNEXPANDED );
+            return;
+        }
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            int m = moves.get( i );
+            int u = b.makeMove( m );
+            h[ i ] = Math.max( -20 * PRIOR_SCALE, Math.min( 20 * PRIOR_SCALE, Board.h( b ) ) );
+            b.unmakeMove( u );
+            max = Math.max( max, h[ i ] );
+        }
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            h[ i ] = Math.exp( (h[ i ] - max) / PRIOR_SCALE );
+            sum += h[ i ];
+        }
+        for (int i = 0; i < n; i++) {
+            move[ first + i ] = moves.get( i );
+            prior[ first + i ] = (float) (h[ i ] / sum);
+        }
+        firstChild[ node ] = first;
+        children[ node ] = n;
+        state.set( node, EXPANDED );  //publishes the children
+    }
+    //-----------------------------------------------------------------------
+    /** @return the value of b (with moves generated) for the player who
+     *  moved into it, after undo.length (rolloutPlies) random plies (b is
+     *  restored).
+     */
+    private double rollout ( Board b, MoveList moves, int[] undo, Random rnd ) {
+        int plies = 0;
+        while (plies < undo.length && !b.gameOver() && b.generateMoves( moves ) > 0) {
+            undo[ plies++ ] = b.makeMove( moves.get( rnd.nextInt( moves.size() ) ) );
+        }
+        int h = Board.h( b );
+        double v;
+        if (h >= Board.INF)        v = 1;
+        else if (h <= -Board.INF)  v = 0;
+        else                       v = 1 / (1 + Math.exp( -h / SCALE ));
+        if ((plies & 1) != 0)  v = 1 - v;  //h is for the player who made the last random ply
+        while (plies > 0)  b.unmakeMove( undo[ --plies ] );
+        return v;
+    }
+    //=======================================================================
+    private SearchResult result ( long millis ) {
+        List< Integer > pv = new ArrayList<>();
+        int node = root;
+        while (state.get( node ) == EXPANDED && children[ node ] > 0) {
+            int first = firstChild[ node ], best = -1;
+            for (int i = first; i < first + children[ node ]; i++) {
+                if (visits.get( i ) > 0 && (best < 0 || visits.get( i ) > visits.get( best )))  best = i;
+            }
+            if (best < 0)  break;
+            pv.add( move[ best ] );
+            node = best;
+        }
+        int[] line = new int[ pv.size() ];
+        for (int i = 0; i < line.length; i++)  line[ i ] = pv.get( i );
+        int bestMove = (line.length > 0) ? line[ 0 ] : Move.NONE;
+        if (bestMove == Move.NONE) {  //no playout got through; any move will do
+            int[] all = rootBoard.suggestMoves();
+            if (all.length > 0)  bestMove = all[ 0 ];
+        }
+
+        int score = 0;
+        if (line.length > 0) {
+            int child = pathChild( line[ 0 ] );
+            double q = (double) value.get( child ) / ONE / Math.max( 1, visits.get( child ) );
+            q = Math.max( 1e-6, Math.min( 1 - 1e-6, q ) );
+            score = (int) Math.round( SCALE * Math.log( q / (1 - q) ) );
+        }
+        return new SearchResult( bestMove, score, line, line.length, playouts.get(), millis );
+    }
+    //-----------------------------------------------------------------------
+    /** @return the root's child of move m. */
+    private int pathChild ( int m ) {
+        int first = firstChild[ root ];
+        for (int i = first; i < first + children[ root ]; i++) {
+            if (move[ i ] == m)  return i;
+        }
+        return root;
+    }
+
+}  //end class Mcts
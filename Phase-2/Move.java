@@ -0,0 +1,134 @@
+package com.dsq2022.game;
+
+/**
+ * Moves packed into a primitive int (no objects are created per move).
+ *
+ * <pre>
+ *   bits  0..5   from square (r*fCols+c)
+ *   bits  6..11  to square
+ *   bits 12..16  captured piece: 0 for none, rank for red, 8+rank for blue
+ *   bit  17      JUMP: a lion or tiger jumped across the water
+ *   bit  18      TRAP: the capture was of a piece on a trap
+ *   bit  19      DEN:  the move enters the opponent's den (and wins)
+ * </pre>
+ * The from/to squares alone (bits 0..11, see squares) identify the move in a
+ * given position and fit in 16 bits (e.g., in a TranspositionTable entry).
+ * 0 is never a legal move (from == to) and means "no move".
+ */
+public final class Move {
+    public static final int   NONE = 0;  ///< no move
+
+    public static final int   JUMP = 1 << 17;  ///< river jump
+    public static final int   TRAP = 1 << 18;  ///< capture on a trap
+    public static final int   DEN  = 1 << 19;  ///< den entry
+
+    /// CAPTURED[ code ] is the piece for a captured code (see above).
+    private static final Piece[] CAPTURED = new Piece[ 17 ];
+
+    static {
+        CAPTURED[ 0 ] = Piece.rbNone;
+        for (Piece p : Piece.values()) {
+            int code = code( p );
+            if (code != 0)  CAPTURED[ code ] = p;
+        }
+    }
+
+    private Move ( ) { }
+    //-----------------------------------------------------------------------
+    /** @return the packed move from square from to square to (no capture or flags). */
+    public static int of ( int from, int to ) {
+        return from | (to << 6);
+    }
+    //-----------------------------------------------------------------------
+    /** @return the packed move from (fromRow,fromCol) to (toRow,toCol) (no capture or flags). */
+    public static int of ( int fromRow, int fromCol, int toRow, int toCol ) {
+        return of( fromRow * Board.fCols + fromCol, toRow * Board.fCols + toCol );
+    }
+    //-----------------------------------------------------------------------
+    /** @return the packed move from square from to square to, capturing
+     *  captured (null or rbNone for none), with the given flags
+     *  (JUMP | TRAP | DEN).
+     */
+    public static int of ( int from, int to, Piece captured, int flags ) {
+        return of( from, to ) | (code( captured ) << 12) | flags;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the captured code (0, rank, or 8+rank) of p. */
+    private static int code ( Piece p ) {
+        int rank = Board.getRank( p );
+        if (rank == 0)  return 0;
+        return (Board.getColor( p ) == GameColor.Blue) ? 8 + rank : rank;
+    }
+    //=======================================================================
+    /** @return the from square of m. */
+    public static int from ( int m ) {
+        return m & 0x3F;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the to square of m. */
+    public static int to ( int m ) {
+        return (m >>> 6) & 0x3F;
+    }
+    //-----------------------------------------------------------------------
+    /** @return just the from/to squares of m (without capture and flags). */
+    public static int squares ( int m ) {
+        return m & 0xFFF;
+    }
+    //-----------------------------------------------------------------------
+    public static int fromRow ( int m ) {
+        return from( m ) / Board.fCols;
+    }
+    //-----------------------------------------------------------------------
+    public static int fromCol ( int m ) {
+        return from( m ) % Board.fCols;
+    }
+    //-----------------------------------------------------------------------
+    public static int toRow ( int m ) {
+        return to( m ) / Board.fCols;
+    }
+    //-----------------------------------------------------------------------
+    public static int toCol ( int m ) {
+        return to( m ) % Board.fCols;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the captured piece (rbNone for none). */
+    public static Piece captured ( int m ) {
+        return CAPTURED[ (m >>> 12) & 0x1F ];
+    }
+    //-----------------------------------------------------------------------
+    /** @return the rank of the captured piece (0 for none). */
+    public static int capturedRank ( int m ) {
+        int code = (m >>> 12) & 0x1F;
+        return (code > 8) ? code - 8 : code;
+    }
+    //-----------------------------------------------------------------------
+    /** @return true if m captures a piece. */
+    public static boolean isCapture ( int m ) {
+        return (m & (0x1F << 12)) != 0;
+    }
+    //-----------------------------------------------------------------------
+    /** @return true if m is a river jump. */
+    public static boolean isJump ( int m ) {
+        return (m & JUMP) != 0;
+    }
+    //-----------------------------------------------------------------------
+    /** @return true if m captures a piece on a trap. */
+    public static boolean isTrapCapture ( int m ) {
+        return (m & TRAP) != 0;
+    }
+    //-----------------------------------------------------------------------
+    /** @return true if m enters the opponent's den. */
+    public static boolean isDenEntry ( int m ) {
+        return (m & DEN) != 0;
+    }
+    //-----------------------------------------------------------------------
+    /** @return m as "(fromRow,fromCol)-(toRow,toCol)", with "x" and the
+     *  captured piece for a capture, or "none".
+     */
+    public static String toString ( int m ) {
+        if (m == NONE)  return "none";
+        String s = "(" + fromRow( m ) + "," + fromCol( m ) + ")-(" + toRow( m ) + "," + toCol( m ) + ")";
+        return isCapture( m ) ? s + "x" + captured( m ) : s;
+    }
+
+}  //end class Move
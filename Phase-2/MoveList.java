@@ -0,0 +1,105 @@
+package com.dsq2022.game;
+
+import java.util.Arrays;
+
+/**
+ * A preallocated, reusable list of packed moves (see Move).
+ *
+ * Move generation (Board.generateMoves) fills it in place, so no boxing,
+ * growth or garbage happens per node. A search keeps one MoveList per ply
+ * and clears it for each new node.
+ *
+ * Each move has an int score (set by MoveOrder) in a parallel buffer, so
+ * the list can be sorted in place without pairing moves and scores in
+ * objects.
+ */
+public final class MoveList {
+    /// enough for any position: at most 4 moves from each of the 63 squares.
+    public static final int   CAPACITY = 4 * Board.fRows * Board.fCols;
+
+    private final int[]  moves = new int[ CAPACITY ];
+    private final int[]  scores = new int[ CAPACITY ];  ///< of moves, for sort
+    private int  size;
+    //-----------------------------------------------------------------------
+    /** remove all moves (the storage is kept). */
+    public void clear ( ) {
+        size = 0;
+    }
+    //-----------------------------------------------------------------------
+    /** append m. */
+    public void add ( int m ) {
+        moves[ size++ ] = m;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the number of moves. */
+    public int size ( ) {
+        return size;
+    }
+    //-----------------------------------------------------------------------
+    public boolean isEmpty ( ) {
+        return size == 0;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the i-th move. */
+    public int get ( int i ) {
+        return moves[ i ];
+    }
+    //-----------------------------------------------------------------------
+    /** replace the i-th move with m. */
+    public void set ( int i, int m ) {
+        moves[ i ] = m;
+    }
+    //-----------------------------------------------------------------------
+    /** swap the i-th and the j-th moves (and their scores). */
+    public void swap ( int i, int j ) {
+        int t = moves[ i ];
+        moves[ i ] = moves[ j ];
+        moves[ j ] = t;
+        t = scores[ i ];
+        scores[ i ] = scores[ j ];
+        scores[ j ] = t;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the score of the i-th move. */
+    public int score ( int i ) {
+        return scores[ i ];
+    }
+    //-----------------------------------------------------------------------
+    /** set the score of the i-th move to s. */
+    public void setScore ( int i, int s ) {
+        scores[ i ] = s;
+    }
+    //-----------------------------------------------------------------------
+    /** sort the moves by score, highest first, in place. the sort is stable
+     *  (moves with the same score keep their order). insertion sort: the
+     *  lists are short (a few dozen moves) and often nearly sorted.
+     */
+    public void sort ( ) {
+        for (int i = 1; i < size; i++) {
+            int m = moves[ i ], s = scores[ i ];
+            int j = i - 1;
+            while (j >= 0 && scores[ j ] < s) {
+                moves[ j + 1 ] = moves[ j ];
+                scores[ j + 1 ] = scores[ j ];
+                j--;
+            }
+            moves[ j + 1 ] = m;
+            scores[ j + 1 ] = s;
+        }
+    }
+    //-----------------------------------------------------------------------
+    /** @return the index of the move with the same from/to squares as m, or -1. */
+    public int indexOf ( int m ) {
+        int squares = Move.squares( m );
+        for (int i = 0; i < size; i++) {
+            if (Move.squares( moves[ i ] ) == squares)  return i;
+        }
+        return -1;
+    }
+    //-----------------------------------------------------------------------
+    /** @return a copy of the moves. */
+    public int[] toArray ( ) {
+        return Arrays.copyOf( moves, size );
+    }
+
+}  //end class MoveList
@@ -0,0 +1,103 @@
+package com.dsq2022.game;
+
+import java.util.Arrays;
+
+/**
+ * Move ordering for Search: the sooner the best move of a node is tried,
+ * the sooner alpha-beta cuts off the rest.
+ *
+ * order scores the moves of a node and sorts them (see MoveList.sort):
+ * <ol>
+ * <li>the transposition table move;</li>
+ * <li>den entries (they win at once);</li>
+ * <li>captures, most valuable victim first and, for the same victim, least
+ *     valuable attacker first (MVV-LVA, by Board.getRank); a capture of a
+ *     piece on a trap (which can not fight back) counts one rank more;</li>
+ * <li>the two killer moves of the ply: quiet moves that recently caused a
+ *     beta cutoff at the same distance from the root;</li>
+ * <li>the other quiet moves by their history: how often (weighted by
+ *     depth*depth) the same from/to move of the same side caused a cutoff
+ *     anywhere in the tree.</li>
+ * </ol>
+ * Search calls cutoff for each quiet move that fails high. Like Search, a
+ * MoveOrder belongs to one thread.
+ */
+public final class MoveOrder {
+    private static final int  TT_MOVE = 1 << 30;
+    private static final int  DEN     = 1 << 29;
+    private static final int  CAPTURE = 1 << 28;  ///< + 16 * victim rank + (8 - attacker rank)
+    private static final int  KILLER  = 1 << 27;  ///< first killer; the second is KILLER - 1
+    private static final int  HISTORY_MAX = 1 << 24;  ///< history is halved when an entry gets here
+
+    private final int[][]  killers;  ///< killers[ ply ][ 0..1 ], as Move.squares
+    /// history[ side ][ Move.squares ] (side 1 for blue).
+    private final int[][]  history = new int[ 2 ][ 1 << 12 ];
+    //=======================================================================
+    /** a MoveOrder for plies 0..maxPly. */
+    public MoveOrder ( int maxPly ) {
+        this.killers = new int[ maxPly + 1 ][ 2 ];
+    }
+    //-----------------------------------------------------------------------
+    /** start a new search: forget the killers and halve the history (the
+     *  tree of the next move is much like the last one).
+     */
+    public void newSearch ( ) {
+        for (int[] k : killers)  Arrays.fill( k, Move.NONE );
+        age();
+    }
+    //-----------------------------------------------------------------------
+    /** halve all history scores. */
+    private void age ( ) {
+        for (int[] h : history) {
+            for (int i = 0; i < h.length; i++)  h[ i ] >>= 1;
+        }
+    }
+    //-----------------------------------------------------------------------
+    /** score the moves of b (generated into moves) at ply and sort them,
+     *  best first. ttMove is the table's move (Move.NONE for none).
+     */
+    public void order ( Board b, MoveList moves, int ttMove, int ply ) {
+        int tt = Move.squares( ttMove );
+        int k0 = killers[ ply ][ 0 ], k1 = killers[ ply ][ 1 ];
+        int[] h = history[ b.bluesTurn ? 1 : 0 ];
+        for (int i = 0; i < moves.size(); i++) {
+            int m = moves.get( i );
+            int sq = Move.squares( m );
+            int s;
+            if (sq == tt && ttMove != Move.NONE) {
+                s = TT_MOVE;
+            } else if (Move.isDenEntry( m )) {
+                s = DEN;
+            } else if (Move.isCapture( m )) {
+                int victim = Move.capturedRank( m ) + (Move.isTrapCapture( m ) ? 1 : 0);
+                int attacker = b.getRank( Move.fromRow( m ), Move.fromCol( m ) );
+                s = CAPTURE + 16 * victim + (8 - attacker);
+            } else if (sq == k0) {
+                s = KILLER;
+            } else if (sq == k1) {
+                s = KILLER - 1;
+            } else {
+                s = h[ sq ];
+            }
+            moves.setScore( i, s );
+        }
+        moves.sort();
+    }
+    //-----------------------------------------------------------------------
+    /** quiet move m of the player to move in b failed high at ply with
+     *  depth plies left: make it the first killer of ply and raise its
+     *  history.
+     */
+    public void cutoff ( Board b, int m, int depth, int ply ) {
+        int sq = Move.squares( m );
+        int[] k = killers[ ply ];
+        if (k[ 0 ] != sq) {
+            k[ 1 ] = k[ 0 ];
+            k[ 0 ] = sq;
+        }
+        int[] h = history[ b.bluesTurn ? 1 : 0 ];
+        h[ sq ] += depth * depth;
+        if (h[ sq ] >= HISTORY_MAX)  age();
+    }
+
+}  //end class MoveOrder
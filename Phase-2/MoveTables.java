@@ -0,0 +1,98 @@
+package com.dsq2022.game;
+
+import java.util.Arrays;
+
+/**
+ * Per-square move tables, computed once when the class is loaded.
+ *
+ * Squares are r*fCols+c and sets of squares are 63-bit masks (see BitBoard).
+ * For every square the tables give its orthogonal neighbours, the landing
+ * squares of a lion/tiger jump across the water together with the water
+ * squares jumped over (which must not hold a rat), and each side's own den
+ * (where it may never move). With these, the geometry of a move is a couple
+ * of mask tests instead of square by square getBase calls.
+ */
+public final class MoveTables {
+    private static final int  SQUARES = BitBoard.SQUARES;
+
+    /// NEIGHBOURS[ sq ]: the squares next to sq (up, down, left, right).
+    public static final int[][]  NEIGHBOURS = new int[ SQUARES ][];
+    /// NEIGHBOUR_MASK[ sq ]: NEIGHBOURS[ sq ] as a mask.
+    public static final long[]   NEIGHBOUR_MASK = new long[ SQUARES ];
+
+    /// JUMPS[ sq ]: the landing squares of a jump across the water from sq.
+    public static final int[][]  JUMPS = new int[ SQUARES ][];
+    /// JUMP_MASK[ sq ]: JUMPS[ sq ] as a mask.
+    public static final long[]   JUMP_MASK = new long[ SQUARES ];
+    /// JUMP_OVER[ sq ][ i ]: the water squares jumped over by JUMPS[ sq ][ i ].
+    public static final long[][] JUMP_OVER = new long[ SQUARES ][];
+
+    public static final long  WATER = BitBoard.WATER;  ///< the two lakes
+    public static final long  TRAPS = BitBoard.TRAPS;  ///< all traps
+    public static final long  DENS  = BitBoard.DENS;   ///< both dens
+
+    private static final int[]  dRow = { -1, 1,  0, 0 };
+    private static final int[]  dCol = {  0, 0, -1, 1 };
+
+    static {
+        int fRows = BitBoard.fRows, fCols = BitBoard.fCols;
+        int[] buf = new int[ 4 ];
+        long[] over = new long[ 4 ];
+        for (int sq = 0; sq < SQUARES; sq++) {
+            int r = sq / fCols, c = sq % fCols;
+            int n = 0, j = 0;
+            for (int d = 0; d < 4; d++) {
+                int nr = r + dRow[ d ], nc = c + dCol[ d ];
+                if (nr < 0 || nr >= fRows || nc < 0 || nc >= fCols)  continue;
+                buf[ n++ ] = BitBoard.square( nr, nc );
+                NEIGHBOUR_MASK[ sq ] |= BitBoard.bit( nr, nc );
+            }
+            NEIGHBOURS[ sq ] = Arrays.copyOf( buf, n );
+
+            //a jump starts on land and crosses only water to the first land square
+            if ((WATER & (1L << sq)) == 0) {
+                int[] landing = new int[ 4 ];
+                for (int d = 0; d < 4; d++) {
+                    long mask = 0;
+                    int nr = r + dRow[ d ], nc = c + dCol[ d ];
+                    while (nr >= 0 && nr < fRows && nc >= 0 && nc < fCols
+                            && (WATER & BitBoard.bit( nr, nc )) != 0) {
+                        mask |= BitBoard.bit( nr, nc );
+                        nr += dRow[ d ];
+                        nc += dCol[ d ];
+                    }
+                    if (mask == 0 || nr < 0 || nr >= fRows || nc < 0 || nc >= fCols)  continue;
+                    landing[ j ] = BitBoard.square( nr, nc );
+                    over[ j++ ] = mask;
+                    JUMP_MASK[ sq ] |= BitBoard.bit( nr, nc );
+                }
+                JUMPS[ sq ] = Arrays.copyOf( landing, j );
+                JUMP_OVER[ sq ] = Arrays.copyOf( over, j );
+            } else {
+                JUMPS[ sq ] = new int[ 0 ];
+                JUMP_OVER[ sq ] = new long[ 0 ];
+            }
+        }
+    }
+
+    private MoveTables ( ) { }
+    //-----------------------------------------------------------------------
+    /** @return the den that pieces of the given color may not enter (0 for None). */
+    public static long ownDen ( GameColor color ) {
+        if (color == GameColor.Red)   return BitBoard.RED_DEN;
+        if (color == GameColor.Blue)  return BitBoard.BLUE_DEN;
+        return 0;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the water squares jumped over from square from to square to,
+     *  or 0 if that is not a jump.
+     */
+    public static long jumpOver ( int from, int to ) {
+        int[] landing = JUMPS[ from ];
+        for (int i = 0; i < landing.length; i++) {
+            if (landing[ i ] == to)  return JUMP_OVER[ from ][ i ];
+        }
+        return 0;
+    }
+
+}  //end class MoveTables
@@ -0,0 +1,147 @@
+package com.dsq2022.game;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Memory-mapped opening book (see OpeningBookBuilder): moves played from
+ * known positions, with weights, looked up by binary search.
+ *
+ * <pre>
+ *   offset  0  int    MAGIC ("DSQO")
+ *           4  short  VERSION
+ *           6  short  entry size (ENTRY_BYTES)
+ *           8  long   number of entries
+ *          16  the entries, sorted by key (then move):
+ *              long  Board.zobristKey() of the position
+ *              int   the move (Move.squares)
+ *              int   its weight (&gt; 0)
+ * </pre>
+ * All values are big-endian. A probe costs about log2(entries) reads of the
+ * mapped file, so a book hit takes microseconds instead of a search.
+ *
+ * An OpeningBook is immutable once opened and may be probed from any number
+ * of threads.
+ */
+public final class OpeningBook implements AutoCloseable {
+    public static final String  EXTENSION = ".dsqo";
+    public static final int     MAGIC = 0x4453514F;  ///< "DSQO"
+    public static final short   VERSION = 1;
+    public static final int     HEADER_BYTES = 16;
+    public static final int     ENTRY_BYTES = 16;
+
+    private final FileChannel       ch;
+    private final MappedByteBuffer  entries;
+    private final int               count;
+    //=======================================================================
+    /** open (and map) the book at path. */
+    public OpeningBook ( Path path ) throws IOException {
+        this.ch = FileChannel.open( path, StandardOpenOption.READ );
+        try {
+            ByteBuffer h = ByteBuffer.allocate( HEADER_BYTES );
+            long at = 0;
+            while (h.hasRemaining()) {
+                int n = ch.read( h, at );
+                if (n < 0)  throw new IOException( "truncated header" );
+                at += n;
+            }
+            if (h.getInt( 0 ) != MAGIC)  throw new IOException( "not an opening book" );
+            if (h.getShort( 4 ) != VERSION)  throw new IOException( "unsupported version " + h.getShort( 4 ) );
+            if (h.getShort( 6 ) != ENTRY_BYTES)  throw new IOException( "bad entry size " + h.getShort( 6 ) );
+            long n = h.getLong( 8 );
+            if (n < 0 || n > Integer.MAX_VALUE / ENTRY_BYTES
+                    || ch.size() < HEADER_BYTES + n * ENTRY_BYTES)  throw new IOException( "bad entry count " + n );
+            this.count = (int) n;
+            this.entries = ch.map( FileChannel.MapMode.READ_ONLY, HEADER_BYTES, (long) count * ENTRY_BYTES );
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            throw e;
+        }
+    }
+    //-----------------------------------------------------------------------
+    /** @return the number of entries (position, move). */
+    public int size ( ) {
+        return count;
+    }
+    //-----------------------------------------------------------------------
+    private long key ( int i ) {
+        return entries.getLong( i * ENTRY_BYTES );
+    }
+    //-----------------------------------------------------------------------
+    private int move ( int i ) {
+        return entries.getInt( i * ENTRY_BYTES + 8 );
+    }
+    //-----------------------------------------------------------------------
+    private int weight ( int i ) {
+        return entries.getInt( i * ENTRY_BYTES + 12 );
+    }
+    //-----------------------------------------------------------------------
+    /** @return the index of the first entry of key (or of the next key). */
+    private int first ( long key ) {
+        int lo = 0, hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (key( mid ) < key)  lo = mid + 1;
+            else                   hi = mid;
+        }
+        return lo;
+    }
+    //=======================================================================
+    /** @return the book moves (Move.squares) of b, or none. */
+    public int[] moves ( Board b ) {
+        long key = b.zobristKey();
+        int from = first( key ), to = from;
+        while (to < count && key( to ) == key)  to++;
+        int[] moves = new int[ to - from ];
+        for (int i = from; i < to; i++)  moves[ i - from ] = move( i );
+        return moves;
+    }
+    //-----------------------------------------------------------------------
+    /** @return a book move of b (see Move), chosen at random in proportion
+     *  to the weights, or Move.NONE if b is not in the book.
+     */
+    public int probe ( Board b ) {
+        return probe( b, ThreadLocalRandom.current() );
+    }
+    //-----------------------------------------------------------------------
+    /** probe with the given source of randomness (e.g., to repeat a game). */
+    public int probe ( Board b, Random rnd ) {
+        long key = b.zobristKey();
+        int from = first( key );
+        long total = 0;
+        int to = from;
+        for (; to < count && key( to ) == key; to++)  total += weight( to );
+        if (total == 0)  return Move.NONE;
+
+        long pick = (long) (rnd.nextDouble() * total);
+        for (int i = from; i < to; i++) {
+            pick -= weight( i );
+            if (pick < 0) {
+                int m = move( i );
+                //a key collision (or a book of other rules) may give a bad move
+                return isPlayable( b, m ) ? m : Move.NONE;
+            }
+        }
+        return Move.NONE;
+    }
+    //-----------------------------------------------------------------------
+    private static boolean isPlayable ( Board b, int m ) {
+        int fr = Move.fromRow( m ), fc = Move.fromCol( m );
+        return !b.gameOver()
+            && b.getColor( fr, fc ) == (b.bluesTurn ? GameColor.Blue : GameColor.Red)
+            && b.isValidMove( fr, fc, Move.toRow( m ), Move.toCol( m ) );
+    }
+    //-----------------------------------------------------------------------
+    /** close the file (the mapping goes away once it is unreachable). */
+    @Override
+    public void close ( ) throws IOException {
+        ch.close();
+    }
+
+}  //end class OpeningBook
@@ -0,0 +1,230 @@
+package com.dsq2022.game;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Builds an OpeningBook from games (self-play or archived).
+ *
+ * For every position of the first maxPlies plies of every game it counts
+ * the moves played (by Board.zobristKey). A move weighs 1 each time it is
+ * played, and 1 more if the player who made it went on to win; write saves
+ * the moves with weight &gt;= minWeight in the sorted OpeningBook format.
+ *
+ * Games are given as a start position and moves, as a list of positions
+ * (each one move after the last), or as a position file (see PositionFile,
+ * e.g., written with PositionArchiveWriter) of such lists one after the
+ * other: a position that does not follow from the one before starts a new
+ * game.
+ *
+ * From the command line:
+ * <pre>
+ *   java com.dsq2022.game.OpeningBookBuilder book.dsqo games.dsqb ...
+ *   java com.dsq2022.game.OpeningBookBuilder book.dsqo -selfplay games depth
+ * </pre>
+ */
+public final class OpeningBookBuilder {
+    public static final int  DEFAULT_PLIES = 16;  ///< book depth
+    public static final int  MAX_GAME_PLIES = 300;  ///< self-play games are cut off here
+
+    private final int  maxPlies;
+    /// stats.get( key ).get( move ): the weight of move (Move.squares) in key.
+    private final Map< Long, Map< Integer, Integer > >  stats = new HashMap<>();
+    private long  games;
+    //=======================================================================
+    public OpeningBookBuilder ( ) {
+        this( DEFAULT_PLIES );
+    }
+    //-----------------------------------------------------------------------
+    /** @param maxPlies the number of plies of each game to record. */
+    public OpeningBookBuilder ( int maxPlies ) {
+        if (maxPlies < 1)  throw new IllegalArgumentException( "maxPlies must be >= 1: " + maxPlies );
+        this.maxPlies = maxPlies;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the number of games added. */
+    public long games ( ) {
+        return games;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the number of distinct (position, move) entries so far. */
+    public int size ( ) {
+        int n = 0;
+        for (Map< Integer, Integer > moves : stats.values())  n += moves.size();
+        return n;
+    }
+    //=======================================================================
+    /** add the game of the given moves (see Move) from start (which is not
+     *  changed). the moves must be valid; the game's winner (if it ends)
+     *  is found by playing them.
+     */
+    public void addGame ( Board start, int[] moves ) {
+        Board b = new Board( start );
+        int n = Math.min( moves.length, maxPlies );
+        long[] keys = new long[ n ];
+        boolean[] blue = new boolean[ n ];
+        for (int i = 0; i < moves.length; i++) {
+            if (i < n) {
+                keys[ i ] = b.zobristKey();
+                blue[ i ] = b.bluesTurn;
+            }
+            int m = moves[ i ];
+            if (!b.doMove( Move.fromRow( m ), Move.fromCol( m ), Move.toRow( m ), Move.toCol( m ) )) {
+                throw new IllegalArgumentException( "invalid move " + Move.toString( m ) + " at ply " + i );
+            }
+        }
+        GameColor winner = b.isBlueWinner() ? GameColor.Blue : b.isRedWinner() ? GameColor.Red : GameColor.None;
+        for (int i = 0; i < n; i++) {
+            boolean won = winner == (blue[ i ] ? GameColor.Blue : GameColor.Red);
+            stats.computeIfAbsent( keys[ i ], k -> new HashMap<>( 4 ) )
+                 .merge( Move.squares( moves[ i ] ), won ? 2 : 1, Integer::sum );
+        }
+        games++;
+    }
+    //-----------------------------------------------------------------------
+    /** add the game of the given positions, each one move after the one
+     *  before (the first is its start).
+     *  @throws IllegalArgumentException if a position does not follow.
+     */
+    public void addGame ( List< Board > positions ) {
+        if (positions.isEmpty())  return;
+        int[] moves = new int[ positions.size() - 1 ];
+        for (int i = 1; i < positions.size(); i++) {
+            moves[ i - 1 ] = moveBetween( positions.get( i - 1 ), positions.get( i ) );
+            if (moves[ i - 1 ] == Move.NONE)  throw new IllegalArgumentException( "position " + i + " does not follow" );
+        }
+        addGame( positions.get( 0 ), moves );
+    }
+    //-----------------------------------------------------------------------
+    /** add the games of a position file (see above).
+     *  @return the number of games added.
+     */
+    public long addArchive ( Path path ) throws IOException {
+        long before = games;
+        try (PositionArchiveReader r = new PositionArchiveReader( path )) {
+            Board start = null, last = null;
+            int[] moves = new int[ 64 ];
+            int n = 0;
+            for (Board b : r) {
+                int m = (last == null) ? Move.NONE : moveBetween( last, b );
+                if (m == Move.NONE) {
+                    if (start != null)  addGame( start, Arrays.copyOf( moves, n ) );
+                    start = b;
+                    n = 0;
+                } else {
+                    if (n == moves.length)  moves = Arrays.copyOf( moves, 2 * n );
+                    moves[ n++ ] = m;
+                }
+                last = b;
+            }
+            if (start != null)  addGame( start, Arrays.copyOf( moves, n ) );
+        }
+        return games - before;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the move from a to b, or Move.NONE if b is not one move after a. */
+    static int moveBetween ( Board a, Board b ) {
+        if (a.bluesTurn == b.bluesTurn)  return Move.NONE;
+        Board c = new Board( a );
+        long key = b.zobristKey();
+        for (int m : a.suggestMoves()) {
+            int undo = c.makeMove( m );
+            boolean same = c.zobristKey() == key && c.equals( b );
+            c.unmakeMove( undo );
+            if (same)  return m;
+        }
+        return Move.NONE;
+    }
+    //-----------------------------------------------------------------------
+    /** play and add games against itself from Board(): randomPlies random
+     *  moves (for variety), then the best move of a search within limits.
+     *  one Search (and its transposition table) plays all the games.
+     */
+    public void selfPlay ( int count, SearchLimits limits, int randomPlies, long seed ) {
+        Random rnd = new Random( seed );
+        Search search = new Search( limits );
+        int[] moves = new int[ MAX_GAME_PLIES ];
+        for (int g = 0; g < count; g++) {
+            Board b = new Board();
+            int n = 0;
+            while (n < MAX_GAME_PLIES && !b.gameOver()) {
+                int m;
+                if (n < randomPlies) {
+                    int[] all = b.suggestMoves();
+                    m = (all.length == 0) ? Move.NONE : all[ rnd.nextInt( all.length ) ];
+                } else {
+                    m = search.search( b ).bestMove();
+                }
+                if (m == Move.NONE)  break;
+                b.makeMove( m );
+                moves[ n++ ] = m;
+            }
+            addGame( new Board(), Arrays.copyOf( moves, n ) );
+        }
+    }
+    //=======================================================================
+    /** write the book (replacing path), with the moves of weight &gt;= minWeight. */
+    public void write ( Path path, int minWeight ) throws IOException {
+        Long[] keys = stats.keySet().toArray( new Long[ 0 ] );
+        Arrays.sort( keys );
+        try (FileChannel ch = FileChannel.open( path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                StandardOpenOption.TRUNCATE_EXISTING )) {
+            ByteBuffer buf = ByteBuffer.allocate( 4096 * OpeningBook.ENTRY_BYTES );
+            ch.position( OpeningBook.HEADER_BYTES );
+            long count = 0;
+            for (Long key : keys) {
+                Map< Integer, Integer > moves = stats.get( key );
+                Integer[] ms = moves.keySet().toArray( new Integer[ 0 ] );
+                Arrays.sort( ms );
+                for (Integer m : ms) {
+                    int w = moves.get( m );
+                    if (w < minWeight)  continue;
+                    if (!buf.hasRemaining())  flush( ch, buf );
+                    buf.putLong( key ).putInt( m ).putInt( w );
+                    count++;
+                }
+            }
+            flush( ch, buf );
+
+            ByteBuffer h = ByteBuffer.allocate( OpeningBook.HEADER_BYTES );
+            h.putInt( OpeningBook.MAGIC ).putShort( OpeningBook.VERSION )
+             .putShort( (short) OpeningBook.ENTRY_BYTES ).putLong( count ).flip();
+            long at = 0;
+            while (h.hasRemaining())  at += ch.write( h, at );
+        }
+    }
+    //-----------------------------------------------------------------------
+    private static void flush ( FileChannel ch, ByteBuffer buf ) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining())  ch.write( buf );
+        buf.clear();
+    }
+    //=======================================================================
+    public static void main ( String[] args ) throws IOException {
+        if (args.length < 2 || (args[ 1 ].equals( "-selfplay" ) && args.length != 4)) {
+            System.err.println( "usage: OpeningBookBuilder book.dsqo (games.dsqb ... | -selfplay games depth)" );
+            System.exit( 1 );
+        }
+        OpeningBookBuilder builder = new OpeningBookBuilder();
+        long start = System.currentTimeMillis();
+        if (args[ 1 ].equals( "-selfplay" )) {
+            SearchLimits limits = new SearchLimits().depth( Integer.parseInt( args[ 3 ] ) ).hashMegabytes( 16 );
+            builder.selfPlay( Integer.parseInt( args[ 2 ] ), limits, 4, 2022 );
+        } else {
+            for (int i = 1; i < args.length; i++)  builder.addArchive( Paths.get( args[ i ] ) );
+        }
+        builder.write( Paths.get( args[ 0 ] ), 1 );
+        System.out.println( builder.games() + " games, " + builder.size() + " entries in "
+                + (System.currentTimeMillis() - start) + " ms" );
+    }
+
+}  //end class OpeningBookBuilder
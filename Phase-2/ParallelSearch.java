@@ -0,0 +1,104 @@
+package com.dsq2022.game;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Multi-threaded (Lazy SMP) search behind Board.chooseBest.
+ *
+ * SearchLimits.threads() workers search the same root at the same time,
+ * each with its own Search (and Board), sharing one TranspositionTable.
+ * The workers mostly help each other through the table; odd numbered
+ * workers search one ply deeper than the main thread each iteration, so
+ * they don't all walk the same tree in lock step. When the main thread
+ * (which runs on the caller's thread) is done, all workers are stopped and
+ * the deepest completed result is returned, with the nodes of all workers.
+ *
+ * A node limit is split evenly over the workers; a time limit is kept by
+ * the main thread (see TimeManager). The worker threads are kept for later
+ * searches until close is called.
+ */
+public final class ParallelSearch implements AutoCloseable {
+    private final TranspositionTable  tt;
+    private final AtomicBoolean       stopSignal = new AtomicBoolean();
+    private final Search[]            workers;
+    private final ExecutorService     pool;
+    //=======================================================================
+    public ParallelSearch ( SearchLimits limits ) {
+        int n = limits.threads();
+        this.tt = (limits.table() != null) ? limits.table() : new TranspositionTable( limits.hashMegabytes() );
+        long nodes = (limits.nodes() == 0) ? 0 : Math.max( 1, (limits.nodes() + n - 1) / n );
+        this.workers = new Search[ n ];
+        for (int i = 0; i < n; i++)  workers[ i ] = new Search( limits, tt, stopSignal, i, nodes );
+        this.pool = (n == 1) ? null : Executors.newFixedThreadPool( n - 1, r -> {
+            Thread t = new Thread( r, "search-helper" );
+            t.setDaemon( true );
+            return t;
+        } );
+    }
+    //-----------------------------------------------------------------------
+    /** @return the transposition table shared by the workers. */
+    public TranspositionTable table ( ) {
+        return tt;
+    }
+    //-----------------------------------------------------------------------
+    /** Stop the running search as soon as possible (from any thread). */
+    public void stop ( ) {
+        stopSignal.set( true );
+    }
+    //-----------------------------------------------------------------------
+    /** @return the result of the last completed iteration of the main
+     *  thread (see Search.current), from any thread.
+     */
+    public SearchResult current ( ) {
+        return workers[ 0 ].current();
+    }
+    //-----------------------------------------------------------------------
+    /** Search root (which is not changed) with all workers.
+     *  @return the deepest completed result, with the nodes searched by all
+     *  workers (so nps() is the combined speed).
+     */
+    public SearchResult search ( final Board root ) {
+        long start = System.currentTimeMillis();
+        stopSignal.set( false );
+        tt.newSearch();
+
+        List< Future< SearchResult > > helpers = new ArrayList<>( workers.length - 1 );
+        for (int i = 1; i < workers.length; i++) {
+            Search worker = workers[ i ];
+            helpers.add( pool.submit( () -> worker.search( root ) ) );
+        }
+        SearchResult best = workers[ 0 ].search( root );
+        stopSignal.set( true );
+
+        long nodes = best.nodes();
+        for (Future< SearchResult > f : helpers) {
+            SearchResult r;
+            try {
+                r = f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                throw new IllegalStateException( "search worker failed", e.getCause() );
+            }
+            nodes += r.nodes();
+            if (r.depth() > best.depth() && r.bestMove() != Move.NONE)  best = r;
+        }
+        return new SearchResult( best.bestMove(), best.score(), best.pv(), best.depth(),
+                                 nodes, System.currentTimeMillis() - start );
+    }
+    //-----------------------------------------------------------------------
+    /** stop the worker threads. */
+    @Override
+    public void close ( ) {
+        stop();
+        if (pool != null)  pool.shutdownNow();
+    }
+
+}  //end class ParallelSearch
@@ -0,0 +1,341 @@
+package com.dsq2022.game;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Perft: count the leaf nodes of the full move tree to a given depth.
+ *
+ * The counts are a correctness baseline for move generation (any change to
+ * isValidMove, generateMoves or makeMove/unmakeMove that changes them is a
+ * bug, or a rule change) and the time taken is a throughput number for the
+ * engine. A finished game (see gameOver) has no moves, so its subtree
+ * counts 0 below depth 0.
+ *
+ * <ul>
+ * <li>count: the number of leaves, walked with generateMoves and
+ *     makeMove/unmakeMove on one Board.</li>
+ * <li>divide: the same, per root move.</li>
+ * <li>count with threads: the root moves are split over a thread pool,
+ *     each thread with its own copy of the Board.</li>
+ * <li>verify: the same count, but at every node the generated moves are
+ *     cross-checked with Board.isValidMove (which uses MoveTables), with
+ *     the independent BitBoard.isValidMove and with validMove here, a
+ *     simple square by square check without any tables; and every child
+ *     with doMove on a copy (for Board and BitBoard). The first difference
+ *     throws an IllegalStateException naming the position and move.</li>
+ * </ul>
+ *
+ * From the command line:
+ * <pre>
+ *   java com.dsq2022.game.Perft [-divide] [-verify] [-threads n] [file [index]] depth
+ * </pre>
+ * prints the count for each depth 1..depth (or per root move with -divide)
+ * with the time taken and nodes per second. The position is the initial
+ * Board() or the index-th (default 0) Board of a file written by
+ * Board.serialize.
+ *
+ * A Perft is not thread safe; the static methods are.
+ */
+public final class Perft {
+    private static final int  MAX_PLY = 64;
+
+    /// one reusable move list per ply.
+    private final MoveList[]  moveLists = new MoveList[ MAX_PLY + 1 ];
+    private final boolean     verify;
+    //=======================================================================
+    private Perft ( boolean verify ) {
+        this.verify = verify;
+        for (int i = 0; i < moveLists.length; i++)  moveLists[ i ] = new MoveList();
+    }
+    //-----------------------------------------------------------------------
+    private static void checkDepth ( int depth ) {
+        if (depth < 0 || depth > MAX_PLY)  throw new IllegalArgumentException( "depth " + depth );
+    }
+    //-----------------------------------------------------------------------
+    /** @return the number of leaves depth plies below root (which is not changed). */
+    public static long count ( final Board root, int depth ) {
+        checkDepth( depth );
+        return new Perft( false ).perft( new Board( root ), depth, 0 );
+    }
+    //-----------------------------------------------------------------------
+    /** @return the number of leaves depth plies below root, with the root
+     *  moves split over the given number of threads.
+     */
+    public static long count ( final Board root, int depth, int threads ) {
+        long n = 0;
+        for (long c : divide( root, depth, threads, false ))  n += c;
+        return (depth == 0) ? 1 : n;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the number of leaves depth plies below root, cross-checking
+     *  every node (see above).
+     *  @throws IllegalStateException on the first difference.
+     */
+    public static long verify ( final Board root, int depth ) {
+        checkDepth( depth );
+        return new Perft( true ).perft( new Board( root ), depth, 0 );
+    }
+    //-----------------------------------------------------------------------
+    /** @return the number of leaves below each root move (in the order of
+     *  root.suggestMoves()), to depth plies below root.
+     */
+    public static long[] divide ( final Board root, int depth ) {
+        return divide( root, depth, 1, false );
+    }
+    //-----------------------------------------------------------------------
+    /** divide, with the root moves split over the given number of threads
+     *  (each with its own Board), optionally cross-checking every node.
+     */
+    public static long[] divide ( final Board root, int depth, int threads, boolean verify ) {
+        checkDepth( depth );
+        if (threads < 1)  throw new IllegalArgumentException( "threads " + threads );
+        int[] moves = root.suggestMoves();
+        long[] counts = new long[ moves.length ];
+        if (depth == 0)  return counts;
+        if (threads == 1 || moves.length < 2) {
+            Perft p = new Perft( verify );
+            for (int i = 0; i < moves.length; i++)  counts[ i ] = p.child( root, moves[ i ], depth );
+            return counts;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool( Math.min( threads, moves.length ), r -> {
+            Thread t = new Thread( r, "perft" );
+            t.setDaemon( true );
+            return t;
+        } );
+        try {
+            List< Future< Long > > futures = new ArrayList<>( moves.length );
+            for (int m : moves) {
+                futures.add( pool.submit( () -> new Perft( verify ).child( root, m, depth ) ) );
+            }
+            for (int i = 0; i < moves.length; i++)  counts[ i ] = futures.get( i ).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException( "perft interrupted", e );
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)  throw (RuntimeException) e.getCause();
+            throw new IllegalStateException( e.getCause() );
+        } finally {
+            pool.shutdownNow();
+        }
+        return counts;
+    }
+    //=======================================================================
+    /** @return the leaves below root move m (depth counts m itself). */
+    private long child ( Board root, int m, int depth ) {
+        Board b = new Board( root );
+        if (verify)  check( b, 0 );
+        b.makeMove( m );
+        return perft( b, depth - 1, 1 );
+    }
+    //-----------------------------------------------------------------------
+    private long perft ( Board b, int depth, int ply ) {
+        if (depth == 0)  return 1;
+        MoveList moves = moveLists[ ply ];
+        int n = b.generateMoves( moves );
+        if (verify)  check( b, ply );
+        if (depth == 1)  return n;
+
+        long leaves = 0;
+        for (int i = 0; i < n; i++) {
+            int undo = b.makeMove( moves.get( i ) );
+            leaves += perft( b, depth - 1, ply + 1 );
+            b.unmakeMove( undo );
+        }
+        return leaves;
+    }
+    //-----------------------------------------------------------------------
+    /** cross-check the moves generated for b (in moveLists[ ply ]) with
+     *  Board.isValidMove, BitBoard.isValidMove and validMove for every pair
+     *  of squares, and each child with Board.doMove and BitBoard.doMove.
+     */
+    private void check ( Board b, int ply ) {
+        MoveList moves = moveLists[ ply ];
+        if (ply == 0)  b.generateMoves( moves );
+        BitBoard bb = new BitBoard( b );
+        int squares = Board.fRows * Board.fCols;
+        GameColor turn = b.bluesTurn ? GameColor.Blue : GameColor.Red;
+        boolean over = b.gameOver();
+        if (over != bb.gameOver())  fail( b, Move.NONE, "gameOver differs" );
+
+        int expected = 0;
+        for (int from = 0; from < squares; from++) {
+            int fr = from / Board.fCols, fc = from % Board.fCols;
+            if (b.getColor( fr, fc ) != turn)  continue;
+            for (int to = 0; to < squares; to++) {
+                int tr = to / Board.fCols, tc = to % Board.fCols;
+                boolean valid = b.isValidMove( fr, fc, tr, tc );
+                if (valid != bb.isValidMove( fr, fc, tr, tc )) {
+                    fail( b, Move.of( from, to ), "Board.isValidMove " + valid + " but BitBoard " + !valid );
+                }
+                if (valid != validMove( b, fr, fc, tr, tc )) {
+                    fail( b, Move.of( from, to ), "Board.isValidMove " + valid + " but the reference " + !valid );
+                }
+                int i = moves.indexOf( Move.of( from, to ) );
+                if (!valid || over) {
+                    if (i >= 0)  fail( b, Move.of( from, to ), "generated but not valid" );
+                    continue;
+                }
+                if (i < 0)  fail( b, Move.of( from, to ), "valid but not generated" );
+                expected++;
+                checkChild( b, bb, moves.get( i ) );
+            }
+        }
+        if (expected != moves.size())  fail( b, Move.NONE, moves.size() + " moves generated, " + expected + " valid" );
+    }
+    //-----------------------------------------------------------------------
+    /** the reference for verify: Board.isValidMove as it was before
+     *  MoveTables, square by square from getBase and getPiece.
+     *  @return true if the move is valid, regardless of whose turn it is.
+     */
+    static boolean validMove ( Board b, int fromRow, int fromCol, int toRow, int toCol ) {
+        Piece p = b.getPiece( fromRow, fromCol );
+        if (p == Piece.rbNone)  return false;
+        Base to = b.getBase( toRow, toCol );
+        if (to == Base.cNone)   return false;
+
+        GameColor color = Board.getColor( p );
+        int rank = Board.getRank( p );
+        //may not enter your own den
+        if (color == GameColor.Red  && to == Base.cRDen)  return false;
+        if (color == GameColor.Blue && to == Base.cBDen)  return false;
+        //only the rat may swim
+        if (to == Base.cWater && rank != 1)  return false;
+
+        int dr = Math.abs( toRow - fromRow );
+        int dc = Math.abs( toCol - fromCol );
+        if (dr + dc != 1) {
+            //the lion and tiger may jump over the water (but not over a rat)
+            if (rank != 6 && rank != 7)  return false;
+            if (dr == 0 && dc == 3) {
+                int step = toCol > fromCol ? 1 : -1;
+                for (int c = fromCol + step; c != toCol; c += step) {
+                    if (b.getBase( fromRow, c ) != Base.cWater || !b.isEmpty( fromRow, c ))  return false;
+                }
+            } else if (dc == 0 && dr == 4) {
+                int step = toRow > fromRow ? 1 : -1;
+                for (int r = fromRow + step; r != toRow; r += step) {
+                    if (b.getBase( r, fromCol ) != Base.cWater || !b.isEmpty( r, fromCol ))  return false;
+                }
+            } else {
+                return false;
+            }
+        }
+
+        Piece victim = b.getPiece( toRow, toCol );
+        if (victim == Piece.rbNone)  return true;
+        GameColor victimColor = Board.getColor( victim );
+        if (victimColor == color)  return false;
+
+        //a rat may not attack across the bank (into or out of the water)
+        Base from = b.getBase( fromRow, fromCol );
+        if ((from == Base.cWater) != (to == Base.cWater))  return false;
+
+        //a trapped piece may be captured by any opponent
+        if (to == Base.cRTrap && (Board.universalTraps || victimColor == GameColor.Blue))  return true;
+        if (to == Base.cBTrap && (Board.universalTraps || victimColor == GameColor.Red))   return true;
+
+        int victimRank = Board.getRank( victim );
+        if (rank == 1 && victimRank == 8)  return true;   //rat takes elephant
+        if (rank == 8 && victimRank == 1)  return false;  //but not the reverse
+        return rank >= victimRank;
+    }
+    //-----------------------------------------------------------------------
+    private static void checkChild ( Board b, BitBoard bb, int m ) {
+        int fr = Move.fromRow( m ), fc = Move.fromCol( m );
+        int tr = Move.toRow( m ),   tc = Move.toCol( m );
+        Board made = new Board( b );
+        made.makeMove( m );
+        Board done = new Board( b );
+        if (!done.doMove( fr, fc, tr, tc ))  fail( b, m, "Board.doMove refused" );
+        BitBoard bbDone = new BitBoard( bb );
+        if (!bbDone.doMove( fr, fc, tr, tc ))  fail( b, m, "BitBoard.doMove refused" );
+        if (!made.equals( done ) || made.moveWasCapture != done.moveWasCapture) {
+            fail( b, m, "makeMove and doMove differ" );
+        }
+        if (!made.equals( bbDone.toBoard() ) || made.moveWasCapture != bbDone.moveWasCapture) {
+            fail( b, m, "Board and BitBoard differ after the move" );
+        }
+        if (made.evaluation() != Evaluator.full( made ))  fail( b, m, "incremental evaluation differs" );
+        Board undone = new Board( b );
+        undone.unmakeMove( undone.makeMove( m ) );
+        if (!undone.equals( b ) || undone.moveWasCapture != b.moveWasCapture
+                || undone.evaluation() != b.evaluation()) {
+            fail( b, m, "unmakeMove does not restore the position" );
+        }
+    }
+    //-----------------------------------------------------------------------
+    private static void fail ( Board b, int m, String what ) {
+        StringBuilder sb = new StringBuilder( "perft: " ).append( what ).append( " at " );
+        try {
+            b.render( sb, RenderStyle.COMPACT );
+        } catch (java.io.IOException impossible) { }
+        sb.append( " move " ).append( Move.toString( m ) );
+        throw new IllegalStateException( sb.toString() );
+    }
+    //=======================================================================
+    public static void main ( String[] args ) {
+        boolean divide = false, verify = false;
+        int threads = 1;
+        List< String > rest = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[ i ]) {
+                case "-divide":   divide = true;  break;
+                case "-verify":   verify = true;  break;
+                case "-threads":  threads = Integer.parseInt( args[ ++i ] );  break;
+                default:          rest.add( args[ i ] );  break;
+            }
+        }
+        if (rest.isEmpty() || rest.size() > 3) {
+            System.err.println( "usage: Perft [-divide] [-verify] [-threads n] [file [index]] depth" );
+            System.exit( 1 );
+        }
+        int depth = Integer.parseInt( rest.get( rest.size() - 1 ) );
+        Board root = new Board();
+        if (rest.size() > 1) {
+            ArrayList< Board > list = Board.deserialize( rest.get( 0 ) );
+            if (list == null || list.isEmpty()) {
+                System.err.println( "Perft: no position in " + rest.get( 0 ) );
+                System.exit( 1 );
+            }
+            root = list.get( (rest.size() > 2) ? Integer.parseInt( rest.get( 1 ) ) : 0 );
+        }
+        System.out.print( root );
+
+        if (divide) {
+            int[] moves = root.suggestMoves();
+            long start = System.nanoTime();
+            long[] counts = divide( root, depth, threads, verify );
+            long nanos = System.nanoTime() - start;
+            long total = 0;
+            for (int i = 0; i < moves.length; i++) {
+                System.out.println( Move.toString( moves[ i ] ) + "\t" + counts[ i ] );
+                total += counts[ i ];
+            }
+            report( depth, total, nanos );
+            return;
+        }
+        for (int d = 1; d <= depth; d++) {
+            long start = System.nanoTime();
+            long n;
+            if (verify) {
+                n = 0;
+                for (long c : divide( root, d, threads, true ))  n += c;
+            } else {
+                n = (threads > 1) ? count( root, d, threads ) : count( root, d );
+            }
+            report( d, n, System.nanoTime() - start );
+        }
+    }
+    //-----------------------------------------------------------------------
+    private static void report ( int depth, long nodes, long nanos ) {
+        long nps = (nanos == 0) ? 0 : (long) (nodes * 1e9 / nanos);
+        System.out.println( "perft " + depth + "\t" + nodes + "\t" + (nanos / 1_000_000) + " ms\t" + nps + " nps" );
+    }
+
+}  //end class Perft
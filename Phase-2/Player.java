@@ -0,0 +1,103 @@
+package com.dsq2022.game;
+
+import java.util.Random;
+
+/**
+ * Something that plays moves, e.g., in a Tournament.
+ *
+ * A Player plays one game at a time (a Tournament makes a new one per
+ * game). Before each move, the thread that asks for it calls newMove; from
+ * then on, stop may be called from any thread, even before move starts
+ * running (e.g., while it waits for a CPU), and it stops that move. When
+ * the game is over, close frees what the player holds (threads, memory).
+ */
+public interface Player extends AutoCloseable {
+    /** @return the move (see Move) to play in b (which may be changed), or
+     *  Move.NONE if there is none. it should answer within about millis ms
+     *  (a Tournament calls stop once they are up).
+     */
+    int move ( Board b, long millis );
+
+    /** a move is about to be asked for: forget a stop of an earlier one. */
+    default void newMove ( ) { }
+
+    /** answer the move asked for (see newMove) as soon as possible, even if
+     *  it has not started yet (from any thread).
+     */
+    default void stop ( ) { }
+
+    /** @return true if move keeps a CPU busy (a search), false if it mostly
+     *  waits (e.g., on a remote player).
+     */
+    default boolean cpuBound ( ) {
+        return true;
+    }
+
+    /** the player will not be asked again: free its threads and memory. */
+    @Override
+    default void close ( ) { }
+    //=======================================================================
+    /** @return a player that searches within limits and the millis of each
+     *  move (see Search), reusing its transposition table from move to
+     *  move. when stopped, it plays the best move of its last completed
+     *  iteration.
+     */
+    static Player search ( SearchLimits limits ) {
+        Search search = new Search( limits );
+        return new Player() {
+            @Override
+            public int move ( Board b, long millis ) {
+                return search.search( b, millis, false ).bestMove();
+            }
+
+            @Override
+            public void newMove ( ) {
+                search.clearStop();
+            }
+
+            @Override
+            public void stop ( ) {
+                search.stop();
+            }
+        };
+    }
+    //-----------------------------------------------------------------------
+    /** @return a player that plays the move of a Monte Carlo tree search
+     *  within limits and the millis of each move (see Mcts), keeping its
+     *  tree from move to move.
+     */
+    static Player mcts ( SearchLimits limits ) {
+        Mcts mcts = new Mcts( limits );
+        return new Player() {
+            @Override
+            public int move ( Board b, long millis ) {
+                return mcts.search( b, millis, false ).bestMove();
+            }
+
+            @Override
+            public void newMove ( ) {
+                mcts.clearStop();
+            }
+
+            @Override
+            public void stop ( ) {
+                mcts.stop();
+            }
+
+            @Override
+            public void close ( ) {
+                mcts.close();
+            }
+        };
+    }
+    //-----------------------------------------------------------------------
+    /** @return a player that plays a random valid move. */
+    static Player random ( long seed ) {
+        Random rnd = new Random( seed );
+        return (b, millis) -> {
+            int[] moves = b.suggestMoves();
+            return (moves.length == 0) ? Move.NONE : moves[ rnd.nextInt( moves.length ) ];
+        };
+    }
+
+}  //end interface Player
@@ -0,0 +1,165 @@
+package com.dsq2022.game;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.CRC32;
+
+/**
+ * Memory-mapped, random access reader of a position file (see PositionFile).
+ *
+ * Nothing is read up front (beyond the header): get(i) decodes the i-th
+ * position straight from the mapped file, and the iterator/spliterator
+ * decode one position at a time, so files of any size are scanned in
+ * constant heap. The spliterator splits by index range, so stream(true)
+ * spreads a file over the common fork/join pool.
+ *
+ * The checksum is only checked by verify (which reads the whole file).
+ * The file is mapped in chunks of at most CHUNK_RECORDS records.
+ */
+public final class PositionArchiveReader implements Iterable< Board >, AutoCloseable {
+    private static final int  CHUNK_RECORDS = 1 << 26;  ///< 1 GB of records per mapping
+
+    private final FileChannel          ch;
+    private final long                 count;
+    private final int                  crc;
+    private final MappedByteBuffer[]   chunks;
+    //=======================================================================
+    /** open (and map) the position file at path. */
+    public PositionArchiveReader ( Path path ) throws IOException {
+        this.ch = FileChannel.open( path, StandardOpenOption.READ );
+        try {
+            ByteBuffer h = PositionFile.readHeader( ch );
+            this.count = h.getLong( 8 );
+            this.crc = h.getInt( 16 );
+            int n = (int) ((count + CHUNK_RECORDS - 1) / CHUNK_RECORDS);
+            this.chunks = new MappedByteBuffer[ n ];
+            for (int i = 0; i < n; i++) {
+                long first = (long) i * CHUNK_RECORDS;
+                long records = Math.min( CHUNK_RECORDS, count - first );
+                chunks[ i ] = ch.map( FileChannel.MapMode.READ_ONLY,
+                        PositionFile.HEADER_BYTES + first * PositionCodec.BYTES, records * PositionCodec.BYTES );
+            }
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            throw e;
+        }
+    }
+    //-----------------------------------------------------------------------
+    /** @return the number of positions. */
+    public long size ( ) {
+        return count;
+    }
+    //-----------------------------------------------------------------------
+    /** @return a new Board for the i-th position (0 &lt;= i &lt; size()). */
+    public Board get ( long i ) {
+        if (i < 0 || i >= count)  throw new IndexOutOfBoundsException( "position " + i + " of " + count );
+        return PositionCodec.read( chunks[ (int) (i / CHUNK_RECORDS) ],
+                                   (int) (i % CHUNK_RECORDS) * PositionCodec.BYTES );
+    }
+    //-----------------------------------------------------------------------
+    /** @return the high long of the encoding of the i-th position (see
+     *  PositionCodec), without decoding it.
+     */
+    long hi ( long i ) {
+        return chunks[ (int) (i / CHUNK_RECORDS) ].getLong( (int) (i % CHUNK_RECORDS) * PositionCodec.BYTES );
+    }
+    //-----------------------------------------------------------------------
+    /** @return the low long of the encoding of the i-th position. */
+    long lo ( long i ) {
+        return chunks[ (int) (i / CHUNK_RECORDS) ].getLong( (int) (i % CHUNK_RECORDS) * PositionCodec.BYTES + Long.BYTES );
+    }
+    //-----------------------------------------------------------------------
+    /** @return true if the records match the checksum in the header. */
+    public boolean verify ( ) {
+        CRC32 c = new CRC32();
+        for (MappedByteBuffer chunk : chunks)  c.update( chunk.duplicate().clear() );
+        return (int) c.getValue() == crc;
+    }
+    //=======================================================================
+    @Override
+    public Iterator< Board > iterator ( ) {
+        return new Iterator< Board >() {
+            private long next = 0;
+
+            @Override
+            public boolean hasNext ( ) {
+                return next < count;
+            }
+
+            @Override
+            public Board next ( ) {
+                if (next >= count)  throw new NoSuchElementException();
+                return get( next++ );
+            }
+        };
+    }
+    //-----------------------------------------------------------------------
+    @Override
+    public Spliterator< Board > spliterator ( ) {
+        return new RangeSpliterator( 0, count );
+    }
+    //-----------------------------------------------------------------------
+    /** @return a stream of the positions in file order. */
+    public Stream< Board > stream ( boolean parallel ) {
+        return StreamSupport.stream( spliterator(), parallel );
+    }
+    //-----------------------------------------------------------------------
+    /** close the file (the mappings go away once they are unreachable). */
+    @Override
+    public void close ( ) throws IOException {
+        ch.close();
+    }
+    //=======================================================================
+    /** the positions [from, to), split in halves. */
+    private final class RangeSpliterator implements Spliterator< Board > {
+        private long from;
+        private final long to;
+
+        RangeSpliterator ( long from, long to ) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean tryAdvance ( Consumer< ? super Board > action ) {
+            if (from >= to)  return false;
+            action.accept( get( from++ ) );
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining ( Consumer< ? super Board > action ) {
+            while (from < to)  action.accept( get( from++ ) );
+        }
+
+        @Override
+        public Spliterator< Board > trySplit ( ) {
+            long mid = (from + to) >>> 1;
+            if (mid - from < 1024)  return null;
+            RangeSpliterator prefix = new RangeSpliterator( from, mid );
+            from = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize ( ) {
+            return to - from;
+        }
+
+        @Override
+        public int characteristics ( ) {
+            return ORDERED | SIZED | SUBSIZED | IMMUTABLE | NONNULL;
+        }
+    }
+
+}  //end class PositionArchiveReader
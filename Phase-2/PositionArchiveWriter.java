@@ -0,0 +1,89 @@
+package com.dsq2022.game;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, streaming writer of a position file (see PositionFile).
+ *
+ * Positions are encoded into a fixed buffer and written in batches, so any
+ * number of them can be written in constant memory. The header (count and
+ * checksum) is written by close; until then, readers reject the file.
+ */
+public final class PositionArchiveWriter implements AutoCloseable {
+    private static final int  BATCH = 4096;  ///< records per write
+
+    private final FileChannel  ch;
+    private final ByteBuffer   buf = ByteBuffer.allocateDirect( BATCH * PositionCodec.BYTES );
+    private final CRC32        crc = new CRC32();
+    private long     count;
+    private boolean  closed;
+    //=======================================================================
+    private PositionArchiveWriter ( FileChannel ch, long count ) {
+        this.ch = ch;
+        this.count = count;
+    }
+    //-----------------------------------------------------------------------
+    /** @return a writer of a new (empty) file at path, replacing any file there. */
+    public static PositionArchiveWriter create ( Path path ) throws IOException {
+        FileChannel ch = FileChannel.open( path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE );
+        ch.position( PositionFile.HEADER_BYTES );
+        return new PositionArchiveWriter( ch, 0 );
+    }
+    //-----------------------------------------------------------------------
+    /** @return a writer that appends to the position file at path (which
+     *  is created if it doesn't exist). the existing records are read once
+     *  to continue their checksum.
+     */
+    public static PositionArchiveWriter append ( Path path ) throws IOException {
+        if (!Files.exists( path ) || Files.size( path ) == 0)  return create( path );
+        FileChannel ch = FileChannel.open( path, StandardOpenOption.READ, StandardOpenOption.WRITE );
+        try {
+            ByteBuffer h = PositionFile.readHeader( ch );
+            PositionArchiveWriter w = new PositionArchiveWriter( ch, h.getLong( 8 ) );
+            ch.position( PositionFile.HEADER_BYTES );
+            while (w.buf.clear().hasRemaining() && ch.read( w.buf ) > 0) {
+                w.buf.flip();
+                w.crc.update( w.buf );
+            }
+            w.buf.clear();
+            if ((int) w.crc.getValue() != h.getInt( 16 ))  throw new IOException( "checksum mismatch" );
+            ch.position( ch.size() );
+            return w;
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            throw e;
+        }
+    }
+    //-----------------------------------------------------------------------
+    /** append b. */
+    public void append ( Board b ) throws IOException {
+        if (closed)  throw new IOException( "writer is closed" );
+        if (!buf.hasRemaining())  PositionFile.flush( ch, buf, crc );
+        PositionCodec.write( buf, b );
+        count++;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the number of positions in the file so far. */
+    public long count ( ) {
+        return count;
+    }
+    //-----------------------------------------------------------------------
+    /** write the remaining positions and the header, and close the file. */
+    @Override
+    public void close ( ) throws IOException {
+        if (closed)  return;
+        closed = true;
+        try (FileChannel c = ch) {
+            PositionFile.flush( c, buf, crc );
+            PositionFile.writeHeader( c, count, (int) crc.getValue() );
+        }
+    }
+
+}  //end class PositionArchiveWriter
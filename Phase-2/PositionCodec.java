@@ -0,0 +1,162 @@
+package com.dsq2022.game;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Fixed size (16 byte) binary encoding of a position.
+ *
+ * A position is where each of the 16 pieces (red rat ... red elephant, blue
+ * rat ... blue elephant) stands, plus bluesTurn and moveWasCapture. The
+ * underlying base is always the standard one and is not stored. Each piece
+ * is a 6-bit square (r*fCols+c) or ABSENT (63) once captured, so the
+ * position fits in two longs:
+ * <pre>
+ *   hi: bits 0..59  squares of pieces 0..9 (6 bits each)
+ *       bit  60     bluesTurn
+ *       bit  61     moveWasCapture
+ *   lo: bits 0..35  squares of pieces 10..15
+ * </pre>
+ * where piece i is red of rank i+1 for i &lt; 8 and blue of rank i-7 otherwise.
+ * The two longs are written hi first (see ByteBuffer order).
+ *
+ * Positions with two pieces of the same kind (possible with setPiece) can
+ * not be encoded.
+ */
+public final class PositionCodec {
+    public static final int   BYTES = 16;  ///< size of an encoded position
+    public static final int   ABSENT = 63;  ///< square of a captured piece
+
+    private static final int  PIECES = 16;
+    private static final int  TURN_BIT = 60;
+    static final int          CAPTURE_BIT = 61;
+
+    /// PIECE[ i ]: the piece of slot i (see above).
+    private static final Piece[]  PIECE = new Piece[ PIECES ];
+
+    static {
+        for (Piece p : Piece.values()) {
+            int slot = slot( p );
+            if (slot >= 0)  PIECE[ slot ] = p;
+        }
+    }
+
+    private PositionCodec ( ) { }
+    //-----------------------------------------------------------------------
+    /** @return the slot (0..15) of p, or -1 for rbNone/null. */
+    private static int slot ( Piece p ) {
+        int rank = Board.getRank( p );
+        if (rank == 0)  return -1;
+        return (Board.getColor( p ) == GameColor.Blue) ? 7 + rank : rank - 1;
+    }
+    //=======================================================================
+    /** @return the 6-bit square of each of the 16 pieces of b (ABSENT if captured).
+     *  @throws IllegalArgumentException if b has two pieces of the same kind.
+     */
+    private static int[] squares ( Board b ) {
+        int[] sq = new int[ PIECES ];
+        Arrays.fill( sq, ABSENT );
+        for (int r = 0; r < Board.fRows; r++) {
+            for (int c = 0; c < Board.fCols; c++) {
+                int slot = slot( b.getPiece( r, c ) );
+                if (slot < 0)  continue;
+                if (sq[ slot ] != ABSENT)  throw new IllegalArgumentException( "more than one " + PIECE[ slot ] );
+                sq[ slot ] = r * Board.fCols + c;
+            }
+        }
+        return sq;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the high long of the encoding of b. */
+    public static long hi ( Board b ) {
+        return hi( squares( b ), b.bluesTurn, b.moveWasCapture );
+    }
+    //-----------------------------------------------------------------------
+    /** @return the low long of the encoding of b. */
+    public static long lo ( Board b ) {
+        return lo( squares( b ) );
+    }
+    //-----------------------------------------------------------------------
+    private static long hi ( int[] sq, boolean bluesTurn, boolean moveWasCapture ) {
+        long hi = 0;
+        for (int i = 0; i < 10; i++)  hi |= (long) sq[ i ] << (6 * i);
+        if (bluesTurn)       hi |= 1L << TURN_BIT;
+        if (moveWasCapture)  hi |= 1L << CAPTURE_BIT;
+        return hi;
+    }
+    //-----------------------------------------------------------------------
+    private static long lo ( int[] sq ) {
+        long lo = 0;
+        for (int i = 10; i < PIECES; i++)  lo |= (long) sq[ i ] << (6 * (i - 10));
+        return lo;
+    }
+    //-----------------------------------------------------------------------
+    /** Write the encoding of b (BYTES bytes) at the buffer's position. */
+    public static void write ( ByteBuffer buf, Board b ) {
+        int[] sq = squares( b );
+        buf.putLong( hi( sq, b.bluesTurn, b.moveWasCapture ) );
+        buf.putLong( lo( sq ) );
+    }
+    //=======================================================================
+    /** @return a new Board decoded from hi and lo. */
+    public static Board decode ( long hi, long lo ) {
+        Board b = new Board();
+        for (int r = 0; r < Board.fRows; r++)  Arrays.fill( b.piece[ r ], Piece.rbNone );
+        for (int i = 0; i < PIECES; i++) {
+            int sq = (int) ((i < 10) ? (hi >>> (6 * i)) : (lo >>> (6 * (i - 10)))) & 0x3F;
+            if (sq == ABSENT)  continue;
+            if (sq >= Board.fRows * Board.fCols)  throw new IllegalArgumentException( "bad square " + sq );
+            b.piece[ sq / Board.fCols ][ sq % Board.fCols ] = PIECE[ i ];
+        }
+        b.bluesTurn = (hi & (1L << TURN_BIT)) != 0;
+        b.moveWasCapture = (hi & (1L << CAPTURE_BIT)) != 0;
+        b.resync();
+        return b;
+    }
+    //-----------------------------------------------------------------------
+    /** @return Board.h of the position encoded in hi and lo, computed from
+     *  the encoding itself (no Board is made).
+     */
+    public static int h ( long hi, long lo ) {
+        int eval = 0;
+        int reds = 0, blues = 0;
+        boolean redInDen = false, blueInDen = false;  //in the opponent's den
+        for (int i = 0; i < PIECES; i++) {
+            int sq = (int) ((i < 10) ? (hi >>> (6 * i)) : (lo >>> (6 * (i - 10)))) & 0x3F;
+            if (sq == ABSENT)  continue;
+            eval += Evaluator.value( PIECE[ i ], sq );
+            if (i < 8) {
+                reds++;
+                redInDen |= (BitBoard.BLUE_DEN & (1L << sq)) != 0;
+            } else {
+                blues++;
+                blueInDen |= (BitBoard.RED_DEN & (1L << sq)) != 0;
+            }
+        }
+        boolean redWinner = redInDen || (reds != 0 && blues == 0);
+        boolean blueWinner = blueInDen || (blues != 0 && reds == 0);
+        if ((hi & (1L << TURN_BIT)) != 0) {  //red just moved
+            if (redWinner)   return Board.INF;
+            if (blueWinner)  return -Board.INF;
+            return -eval;
+        }
+        if (blueWinner)  return Board.INF;
+        if (redWinner)   return -Board.INF;
+        return eval;
+    }
+    //-----------------------------------------------------------------------
+    /** @return a new Board decoded from the BYTES bytes at the buffer's position. */
+    public static Board read ( ByteBuffer buf ) {
+        long hi = buf.getLong();
+        long lo = buf.getLong();
+        return decode( hi, lo );
+    }
+    //-----------------------------------------------------------------------
+    /** @return a new Board decoded from the BYTES bytes at index (the
+     *  buffer's position is not changed).
+     */
+    public static Board read ( ByteBuffer buf, int index ) {
+        return decode( buf.getLong( index ), buf.getLong( index + Long.BYTES ) );
+    }
+
+}  //end class PositionCodec
@@ -0,0 +1,118 @@
+package com.dsq2022.game;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Compact, versioned binary file of positions (extension EXTENSION).
+ *
+ * <pre>
+ *   offset  0  int    MAGIC ("DSQB")
+ *           4  short  VERSION
+ *           6  short  record size (PositionCodec.BYTES)
+ *           8  long   number of positions
+ *          16  int    CRC-32 of all the records
+ *          20  int    reserved (0)
+ *          24  the records, PositionCodec.BYTES each
+ * </pre>
+ * All values are big-endian. Files are read and written through NIO
+ * channels in large batches. For files too large to hold as one list, see
+ * PositionArchiveWriter and PositionArchiveReader.
+ */
+public final class PositionFile {
+    public static final String  EXTENSION = ".dsqb";
+    public static final int     MAGIC = 0x44535142;  ///< "DSQB"
+    public static final short   VERSION = 1;
+    public static final int     HEADER_BYTES = 24;
+
+    private static final int    BATCH = 4096;  ///< records per read/write
+
+    private PositionFile ( ) { }
+    //-----------------------------------------------------------------------
+    /** @return true if name has the binary position file extension. */
+    public static boolean isPositionFile ( String name ) {
+        return name.toLowerCase().endsWith( EXTENSION );
+    }
+    //=======================================================================
+    /** Write boards to path (replacing it). */
+    public static void write ( Path path, List< Board > boards ) throws IOException {
+        try (PositionArchiveWriter w = PositionArchiveWriter.create( path )) {
+            for (Board b : boards)  w.append( b );
+        }
+    }
+    //-----------------------------------------------------------------------
+    /** write out the records in buf and add them to crc. */
+    static void flush ( FileChannel ch, ByteBuffer buf, CRC32 crc ) throws IOException {
+        buf.flip();
+        crc.update( buf.duplicate() );
+        while (buf.hasRemaining())  ch.write( buf );
+        buf.clear();
+    }
+    //-----------------------------------------------------------------------
+    /** write the header (at offset 0, without moving the channel's position). */
+    static void writeHeader ( FileChannel ch, long count, int crc ) throws IOException {
+        ByteBuffer h = ByteBuffer.allocate( HEADER_BYTES );
+        h.putInt( MAGIC ).putShort( VERSION ).putShort( (short) PositionCodec.BYTES )
+         .putLong( count ).putInt( crc ).putInt( 0 ).flip();
+        long at = 0;
+        while (h.hasRemaining())  at += ch.write( h, at );
+    }
+    //-----------------------------------------------------------------------
+    /** read and check the header.
+     *  @return the header (position 0; count at offset 8, crc at offset 16).
+     *  @throws IOException if this is not a (complete) position file.
+     */
+    static ByteBuffer readHeader ( FileChannel ch ) throws IOException {
+        ByteBuffer h = ByteBuffer.allocate( HEADER_BYTES );
+        long at = 0;
+        while (h.hasRemaining()) {
+            int n = ch.read( h, at );
+            if (n < 0)  throw new IOException( "truncated header" );
+            at += n;
+        }
+        h.flip();
+        if (h.getInt( 0 ) != MAGIC)  throw new IOException( "not a position file" );
+        if (h.getShort( 4 ) != VERSION)  throw new IOException( "unsupported version " + h.getShort( 4 ) );
+        if (h.getShort( 6 ) != PositionCodec.BYTES)  throw new IOException( "bad record size " + h.getShort( 6 ) );
+        long count = h.getLong( 8 );
+        if (count < 0 || ch.size() != HEADER_BYTES + count * PositionCodec.BYTES) {
+            throw new IOException( "size does not match " + count + " positions" );
+        }
+        return h;
+    }
+    //-----------------------------------------------------------------------
+    /** @return all the positions in path.
+     *  @throws IOException if the file can't be read or is corrupt.
+     */
+    public static ArrayList< Board > read ( Path path ) throws IOException {
+        try (FileChannel ch = FileChannel.open( path, StandardOpenOption.READ )) {
+            ByteBuffer h = readHeader( ch );
+            long count = h.getLong( 8 );
+            if (count > Integer.MAX_VALUE - 8)  throw new IOException( "too many positions for a list: " + count );
+            ArrayList< Board > list = new ArrayList<>( (int) count );
+            CRC32 crc = new CRC32();
+            ByteBuffer buf = ByteBuffer.allocateDirect( BATCH * PositionCodec.BYTES );
+            ch.position( HEADER_BYTES );
+            while (list.size() < count) {
+                buf.clear();
+                long left = (count - list.size()) * PositionCodec.BYTES;
+                if (left < buf.capacity())  buf.limit( (int) left );
+                while (buf.hasRemaining()) {
+                    if (ch.read( buf ) < 0)  throw new IOException( "truncated file" );
+                }
+                buf.flip();
+                crc.update( buf.duplicate() );
+                while (buf.hasRemaining())  list.add( PositionCodec.read( buf ) );
+            }
+            if ((int) crc.getValue() != h.getInt( 16 ))  throw new IOException( "checksum mismatch" );
+            return list;
+        }
+    }
+
+}  //end class PositionFile
@@ -0,0 +1,191 @@
+package com.dsq2022.game;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An off-heap set of positions with a count per position, e.g., to find
+ * the distinct positions of archives (see PositionArchiveReader) and how
+ * often each one occurs.
+ *
+ * Positions are keyed by their PositionCodec encoding without
+ * moveWasCapture (so the same position reached with or without a capture
+ * is one key). Each slot is 24 bytes outside the Java heap: hi, lo and the
+ * count; a table of n slots takes 24n bytes however many positions it
+ * holds, and the garbage collector never looks at it. Slots live in direct
+ * ByteBuffers of at most 2^SEGMENT_BITS slots each, so a table may be
+ * larger than 2 GB.
+ *
+ * Open addressing with linear probing. Any number of threads may add at
+ * the same time without locks: a thread claims an empty slot by a CAS of hi
+ * from 0 and then sets lo (neither can be 0 for a real position, as no
+ * two pieces share a square); a thread that finds hi claimed but lo still
+ * 0 waits for it. Counts are updated with an atomic add.
+ *
+ * The table does not grow: add throws IllegalStateException once more
+ * than MAX_LOAD of the slots are used, so size it for the expected number
+ * of distinct positions. Positions are never removed.
+ */
+public final class PositionSet {
+    public static final double  MAX_LOAD = 0.9;  ///< most of the slots that may be used
+    private static final int    SEGMENT_BITS = 26;  ///< 1.5 GB of slots per buffer
+    private static final int    SLOT_BYTES = 3 * Long.BYTES;  ///< hi, lo, count
+
+    /// atomic access to the longs of a (direct) ByteBuffer, by byte offset.
+    private static final VarHandle  LONGS = MethodHandles.byteBufferViewVarHandle( long[].class, ByteOrder.nativeOrder() );
+
+    private final ByteBuffer[]  segments;
+    private final long          mask;  ///< slots - 1
+    private final long          maxSize;
+    private final AtomicLong    size = new AtomicLong();
+    //=======================================================================
+    /** a set with room for (at least) the given number of positions. the
+     *  number of slots is the next power of two above positions / 0.75.
+     */
+    public PositionSet ( long positions ) {
+        if (positions < 1)  throw new IllegalArgumentException( "positions must be >= 1: " + positions );
+        long slots = Long.highestOneBit( Math.max( 2, (long) (positions / 0.75) ) - 1 ) << 1;
+        this.mask = slots - 1;
+        this.maxSize = (long) (slots * MAX_LOAD);
+        int perSegment = (int) Math.min( slots, 1L << SEGMENT_BITS );
+        this.segments = new ByteBuffer[ (int) (slots / perSegment) ];
+        for (int i = 0; i < segments.length; i++) {
+            segments[ i ] = ByteBuffer.allocateDirect( perSegment * SLOT_BYTES ).order( ByteOrder.nativeOrder() );
+        }
+    }
+    //-----------------------------------------------------------------------
+    /** @return the number of distinct positions. */
+    public long size ( ) {
+        return size.get();
+    }
+    //-----------------------------------------------------------------------
+    /** @return the number of slots. */
+    public long capacity ( ) {
+        return mask + 1;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the number of bytes taken off the heap. */
+    public long bytes ( ) {
+        return capacity() * SLOT_BYTES;
+    }
+    //=======================================================================
+    /** count b once more.
+     *  @return true if b was not in the set (its count is now 1).
+     */
+    public boolean add ( Board b ) {
+        return add( PositionCodec.hi( b ), PositionCodec.lo( b ), 1 ) == 1;
+    }
+    //-----------------------------------------------------------------------
+    /** count the encoded position (see PositionCodec) n more times.
+     *  @return its count after that (n if it was not in the set).
+     *  @throws IllegalStateException if the set is full (see MAX_LOAD).
+     */
+    public long add ( long hi, long lo, long n ) {
+        hi &= ~(1L << PositionCodec.CAPTURE_BIT);
+        for (long i = hash( hi, lo ); ; i = (i + 1) & mask) {
+            ByteBuffer seg = segments[ (int) (i >>> SEGMENT_BITS) ];
+            int at = (int) (i & ((1L << SEGMENT_BITS) - 1)) * SLOT_BYTES;
+            long h = (long) LONGS.getVolatile( seg, at );
+            if (h == 0) {
+                if (size.get() >= maxSize)  throw new IllegalStateException( "position set is full: " + size() );
+                h = (long) LONGS.compareAndExchange( seg, at, 0L, hi );
+                if (h == 0) {  //claimed it
+                    LONGS.getAndAdd( seg, at + 2 * Long.BYTES, n );
+                    LONGS.setVolatile( seg, at + Long.BYTES, lo );
+                    size.incrementAndGet();
+                    return n;
+                }
+            }
+            if (h != hi)  continue;
+            long l;
+            while ((l = (long) LONGS.getVolatile( seg, at + Long.BYTES )) == 0)  Thread.onSpinWait();
+            if (l == lo)  return (long) LONGS.getAndAdd( seg, at + 2 * Long.BYTES, n ) + n;
+        }
+    }
+    //-----------------------------------------------------------------------
+    /** @return how often b was added (0 if never). */
+    public long count ( Board b ) {
+        return count( PositionCodec.hi( b ), PositionCodec.lo( b ) );
+    }
+    //-----------------------------------------------------------------------
+    /** @return how often the encoded position was added (0 if never). */
+    public long count ( long hi, long lo ) {
+        hi &= ~(1L << PositionCodec.CAPTURE_BIT);
+        for (long i = hash( hi, lo ); ; i = (i + 1) & mask) {
+            ByteBuffer seg = segments[ (int) (i >>> SEGMENT_BITS) ];
+            int at = (int) (i & ((1L << SEGMENT_BITS) - 1)) * SLOT_BYTES;
+            long h = (long) LONGS.getVolatile( seg, at );
+            if (h == 0)  return 0;
+            if (h != hi)  continue;
+            long l;
+            while ((l = (long) LONGS.getVolatile( seg, at + Long.BYTES )) == 0)  Thread.onSpinWait();
+            if (l == lo)  return (long) LONGS.getVolatile( seg, at + 2 * Long.BYTES );
+        }
+    }
+    //-----------------------------------------------------------------------
+    /** @return true if b was added. */
+    public boolean contains ( Board b ) {
+        return count( b ) > 0;
+    }
+    //-----------------------------------------------------------------------
+    /** Receives the positions of a PositionSet (see forEach). */
+    @FunctionalInterface
+    public interface Visitor {
+        /** position hi, lo (see PositionCodec) was added count times. */
+        void visit ( long hi, long lo, long count );
+    }
+    //-----------------------------------------------------------------------
+    /** call v for each position (in no particular order). positions added
+     *  meanwhile may or may not be seen.
+     */
+    public void forEach ( Visitor v ) {
+        for (ByteBuffer seg : segments) {
+            for (int at = 0; at < seg.capacity(); at += SLOT_BYTES) {
+                long hi = (long) LONGS.getVolatile( seg, at );
+                long lo = (long) LONGS.getVolatile( seg, at + Long.BYTES );
+                if (hi != 0 && lo != 0)  v.visit( hi, lo, (long) LONGS.getVolatile( seg, at + 2 * Long.BYTES ) );
+            }
+        }
+    }
+    //-----------------------------------------------------------------------
+    /** @return the first slot of hi, lo. */
+    private long hash ( long hi, long lo ) {
+        long h = hi * 0x9E3779B97F4A7C15L ^ lo;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h & mask;
+    }
+    //=======================================================================
+    /** count the distinct positions of archives: PositionSet file... */
+    public static void main ( String[] args ) throws IOException {
+        if (args.length == 0) {
+            System.err.println( "usage: PositionSet archive..." );
+            System.exit( 1 );
+        }
+        long total = 0;
+        for (String f : args) {
+            try (PositionArchiveReader r = new PositionArchiveReader( Paths.get( f ) )) {
+                total += r.size();
+            }
+        }
+        PositionSet set = new PositionSet( Math.max( 1, total ) );
+        for (String f : args) {
+            try (PositionArchiveReader r = new PositionArchiveReader( Paths.get( f ) )) {
+                for (long i = 0; i < r.size(); i++)  set.add( r.hi( i ), r.lo( i ), 1 );
+            }
+        }
+        long[] dups = new long[ 1 ];
+        set.forEach( (hi, lo, count) -> dups[ 0 ] += count - 1 );
+        System.out.println( total + " positions, " + set.size() + " distinct, " + dups[ 0 ] + " duplicates ("
+                            + set.bytes() / (1 << 20) + " MB off heap)" );
+    }
+
+}  //end class PositionSet
@@ -0,0 +1,18 @@
+package com.dsq2022.game;
+
+/**
+ * How Board.render draws a Board.
+ */
+public enum RenderStyle {
+    /** one line, FEN-like: rows top to bottom separated by '/', blue pieces
+     *  in upper case and red in lower case (R at, C at, D og, W olf,
+     *  leo P ard, T iger, L ion, E lephant), digits for runs of empty
+     *  squares, then 'b' or 'r' for the player to move, e.g.,
+     *  "l5t/1d3c1/r3w1e/7/3p3/7/E3P1R/1C3D1/1T4L b". */
+    COMPACT,
+    /** the pieces only, one row per line (e.g., rLi for the red lion). */
+    GRID,
+    /** the underlying base on the left and the pieces on the right, one
+     *  row per line (this is toString). */
+    SIDE_BY_SIDE
+}
@@ -0,0 +1,354 @@
+package com.dsq2022.game;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Search engine behind Board.chooseBest.
+ *
+ * Negamax with alpha-beta pruning, iterative deepening (depth 1, 2, ...),
+ * principal variation search (null window searches after the first move,
+ * re-searched only if they beat alpha) and aspiration windows around the
+ * score of the previous iteration. Positions are cached in a
+ * TranspositionTable. Moves are tried in the order of MoveOrder (table
+ * move, den entries, captures, killers, history). The tree is walked on
+ * one private copy of the root with Board.makeMove/unmakeMove. Positions
+ * covered by the Tablebase of the limits (if any) are not searched but
+ * scored from the table.
+ *
+ * Scores are from the point of view of the player to move (i.e., -h of the
+ * position, see Board.h). A win in n plies scores INF-n, a loss in n plies
+ * -INF+n, so quicker wins (and slower losses) are preferred.
+ *
+ * With a time limit (see TimeManager) a timer sets the stop flag at the
+ * hard deadline, and no new iteration is started past the soft target.
+ * The result of the last completed iteration is always ready (see current).
+ * What the search does is counted by SearchStats (when enabled).
+ *
+ * A Search is not thread safe (but any number of them may share a
+ * TranspositionTable, see ParallelSearch). stop and current may be called
+ * from any thread.
+ */
+public final class Search {
+    private static final int  INF = Board.INF;
+    private static final int  WIN_BOUND = INF - 1000;  ///< |scores| beyond are wins/losses
+    private static final int  MAX_PLY = 128;
+    private static final int  ASPIRATION = 50;  ///< initial half width of the aspiration window
+
+    private final SearchLimits        limits;
+    private final TranspositionTable  tt;
+    private final Tablebase           tablebase;   ///< null for none
+    private final AtomicBoolean       stopSignal;  ///< set to stop (maybe shared)
+    private final boolean             shared;      ///< one of the workers of a ParallelSearch
+    private final int                 helper;      ///< 0 for the main thread; see search
+    private final long                nodeLimit;   ///< 0 for no limit
+
+    /// triangular principal variation table: pvTable[ ply ][ ply..pvLength[ ply ]-1 ].
+    private final int[][]  pvTable = new int[ MAX_PLY + 1 ][ MAX_PLY + 1 ];
+    private final int[]    pvLength = new int[ MAX_PLY + 1 ];
+
+    /// one reusable move list per ply.
+    private final MoveList[]  moveLists = new MoveList[ MAX_PLY + 1 ];
+    private final MoveOrder   order = new MoveOrder( MAX_PLY );
+
+    private long     nodes;
+    private boolean  stopped;
+    private SearchStats.Stripe  stats;  ///< of the searching thread (only if SearchStats.ENABLED)
+    private volatile SearchResult  current;  ///< of the last completed iteration
+    //=======================================================================
+    public Search ( SearchLimits limits ) {
+        this( limits, (limits.table() != null) ? limits.table() : new TranspositionTable( limits.hashMegabytes() ),
+              new AtomicBoolean(), false, 0, limits.nodes() );
+    }
+    //-----------------------------------------------------------------------
+    /** a search within limits using table tt (instead of the limits'). */
+    Search ( SearchLimits limits, TranspositionTable tt ) {
+        this( limits, tt, new AtomicBoolean(), false, 0, limits.nodes() );
+    }
+    //-----------------------------------------------------------------------
+    /** a worker of a ParallelSearch: shares tt and stopSignal with the
+     *  other workers. helper i searches each iteration (i % 2) plies deeper
+     *  than the main thread (i = 0), so the workers don't all search the
+     *  same tree in lock step.
+     */
+    Search ( SearchLimits limits, TranspositionTable tt, AtomicBoolean stopSignal, int helper, long nodeLimit ) {
+        this( limits, tt, stopSignal, true, helper, nodeLimit );
+    }
+    //-----------------------------------------------------------------------
+    private Search ( SearchLimits limits, TranspositionTable tt, AtomicBoolean stopSignal,
+                     boolean shared, int helper, long nodeLimit ) {
+        this.limits = limits;
+        this.tt = tt;
+        this.tablebase = limits.tablebase();
+        this.stopSignal = stopSignal;
+        this.shared = shared;
+        this.helper = helper;
+        this.nodeLimit = nodeLimit;
+        for (int i = 0; i < moveLists.length; i++)  moveLists[ i ] = new MoveList();
+    }
+    //-----------------------------------------------------------------------
+    /** @return the transposition table used by this search. */
+    public TranspositionTable table ( ) {
+        return tt;
+    }
+    //-----------------------------------------------------------------------
+    /** Stop the running search as soon as possible (from any thread). It
+     *  returns the result of its last completed iteration. A stop before a
+     *  search started stops that search too, unless it is started with
+     *  search(Board), which forgets it.
+     */
+    public void stop ( ) {
+        stopSignal.set( true );
+    }
+    //-----------------------------------------------------------------------
+    /** forget a stop (see stop and search(Board, long, boolean)). */
+    void clearStop ( ) {
+        stopSignal.set( false );
+    }
+    //-----------------------------------------------------------------------
+    /** @return the result of the last completed iteration of the running
+     *  (or last) search, or null before the first search has a move (from
+     *  any thread).
+     */
+    public SearchResult current ( ) {
+        return current;
+    }
+    //-----------------------------------------------------------------------
+    /** Search root (which is not changed) by iterative deepening until a
+     *  limit is reached or a forced win/loss is found.
+     *  @return the result of the last completed iteration.
+     */
+    public SearchResult search ( final Board root ) {
+        return search( root, 0, true );
+    }
+    //-----------------------------------------------------------------------
+    /** Search root within the limits and at most millis ms (0 for no more
+     *  than the limits). with clearStop false, a stop that came before this
+     *  call (e.g., while the search waited for a thread) is kept, so the
+     *  caller must clearStop before it asks for the search (see
+     *  Player.search). the search (or its thread being interrupted) ends it.
+     */
+    SearchResult search ( final Board root, long millis, boolean clearStop ) {
+        long start = System.currentTimeMillis();
+        Board board = new Board( root );
+        nodes = 0;
+        stopped = false;
+        if (SearchStats.ENABLED)  stats = SearchStats.stripe();
+        order.newSearch();
+        if (!shared) {  //otherwise the ParallelSearch does this for all workers
+            if (clearStop)  stopSignal.set( false );
+            tt.newSearch();
+        }
+
+        int[] rootMoves = board.suggestMoves();
+        if (rootMoves.length == 0) {
+            current = new SearchResult( Move.NONE, 0, new int[ 0 ], 0, 0, System.currentTimeMillis() - start );
+            if (!shared)  stopSignal.set( false );
+            return current;
+        }
+        current = new SearchResult( rootMoves[ 0 ], 0, new int[] { rootMoves[ 0 ] }, 0, 0, 0 );
+
+        //the main thread keeps the time (and stops the helpers with it)
+        TimeManager time = (helper == 0) ? TimeManager.of( limits, millis ) : null;
+        if (time != null)  time.start( stopSignal );
+        try {
+            return iterate( board, start, rootMoves, time );
+        } finally {
+            if (time != null)  time.finish();
+            if (!shared)  stopSignal.set( false );  //used up (e.g., by the deadline)
+        }
+    }
+    //-----------------------------------------------------------------------
+    /** the iterative deepening loop of search. */
+    private SearchResult iterate ( Board board, long start, int[] rootMoves, TimeManager time ) {
+        int bestMove = rootMoves[ 0 ];
+        int[] pv = { bestMove };
+        int score = 0;
+        int completed = 0;
+
+        for (int iteration = 1; iteration <= limits.depth(); iteration++) {
+            int depth = Math.min( limits.depth(), iteration + (helper % 2) );
+            long iterationStart = SearchStats.ENABLED ? System.nanoTime() : 0;
+            SearchStats.IterationEvent event = null;
+            if (SearchStats.ENABLED) {
+                event = new SearchStats.IterationEvent();
+                event.begin();
+            }
+            int delta = ASPIRATION;
+            int alpha = -INF, beta = INF;
+            if (depth >= 3 && Math.abs( score ) < WIN_BOUND) {
+                alpha = Math.max( -INF, score - delta );
+                beta = Math.min( INF, score + delta );
+            }
+            int s;
+            while (true) {
+                s = negamax( board, depth, alpha, beta, 0 );
+                if (stopped)  break;
+                if (s <= alpha && alpha > -INF) {
+                    alpha = Math.max( -INF, s - delta );
+                } else if (s >= beta && beta < INF) {
+                    beta = Math.min( INF, s + delta );
+                } else {
+                    break;
+                }
+                delta *= 4;
+            }
+            if (stopped)  break;
+
+            score = s;
+            completed = depth;
+            bestMove = pvTable[ 0 ][ 0 ];
+            pv = Arrays.copyOf( pvTable[ 0 ], pvLength[ 0 ] );
+            current = new SearchResult( bestMove, score, pv, completed, nodes, System.currentTimeMillis() - start );
+            if (SearchStats.ENABLED) {
+                stats.add( SearchStats.ITERATIONS );
+                stats.add( SearchStats.ITERATION_NANOS, System.nanoTime() - iterationStart );
+                if (event.shouldCommit()) {
+                    event.depth = depth;
+                    event.score = score;
+                    event.bestMove = Move.toString( bestMove );
+                    event.nodes = nodes;
+                    event.helper = helper;
+                    event.commit();
+                }
+            }
+            if (Math.abs( score ) >= WIN_BOUND)  break;  //forced win/loss; deeper won't change it
+            if (depth == limits.depth())  break;
+            if (time != null && time.iterationDone( bestMove ))  break;
+        }
+        return new SearchResult( bestMove, score, pv, completed, nodes, System.currentTimeMillis() - start );
+    }
+    //=======================================================================
+    private int negamax ( Board b, int depth, int alpha, int beta, int ply ) {
+        pvLength[ ply ] = ply;
+        if ((nodeLimit != 0 && nodes >= nodeLimit)
+                || ((nodes & 1023) == 0 && (stopSignal.get() || Thread.currentThread().isInterrupted()))) {
+            stopped = true;
+            return 0;
+        }
+        nodes++;
+        if (SearchStats.ENABLED)  stats.add( SearchStats.NODES );
+
+        if (ply > 0 && b.gameOver())  return terminal( b, ply );
+        if (ply > 0 && tablebase != null) {
+            int v = tablebase.probe( b );
+            if (v != Tablebase.NOT_FOUND)  return fromTablebase( v, ply );
+        }
+        if (depth <= 0 || ply >= MAX_PLY) {
+            if (SearchStats.ENABLED)  stats.add( SearchStats.LEAF_NODES );
+            return evaluate( b );
+        }
+
+        boolean pvNode = beta - alpha > 1;
+        long key = b.zobristKey();
+        long entry = tt.probe( key );
+        if (SearchStats.ENABLED) {
+            stats.add( SearchStats.TT_PROBES );
+            if (entry != 0)  stats.add( SearchStats.TT_HITS );
+        }
+        int ttMove = Move.NONE;
+        if (entry != 0) {
+            ttMove = TranspositionTable.move( entry );
+            if (ply > 0 && !pvNode && TranspositionTable.depth( entry ) >= depth) {
+                int s = fromTable( TranspositionTable.score( entry ), ply );
+                int bound = TranspositionTable.bound( entry );
+                if (bound == TranspositionTable.BOUND_EXACT
+                        || (bound == TranspositionTable.BOUND_LOWER && s >= beta)
+                        || (bound == TranspositionTable.BOUND_UPPER && s <= alpha)) {
+                    if (SearchStats.ENABLED)  stats.add( SearchStats.TT_CUTOFFS );
+                    return s;
+                }
+            }
+        }
+
+        MoveList moves = moveLists[ ply ];
+        int n = b.generateMoves( moves );
+        if (SearchStats.ENABLED) {
+            stats.add( SearchStats.MOVEGENS );
+            stats.add( SearchStats.MOVES, n );
+        }
+        if (n == 0)  return -INF + ply;  //no move: lost
+        order.order( b, moves, ttMove, ply );
+
+        int alphaOrig = alpha;
+        int best = -INF - 1;
+        int bestMove = Move.NONE;
+        for (int i = 0; i < moves.size(); i++) {
+            int m = moves.get( i );
+            int undo = b.makeMove( m );
+            int s;
+            if (i == 0) {
+                s = -negamax( b, depth - 1, -beta, -alpha, ply + 1 );
+            } else {
+                s = -negamax( b, depth - 1, -alpha - 1, -alpha, ply + 1 );
+                if (s > alpha && s < beta && !stopped)  s = -negamax( b, depth - 1, -beta, -alpha, ply + 1 );
+            }
+            b.unmakeMove( undo );
+            if (stopped)  return 0;
+
+            if (s > best) {
+                best = s;
+                bestMove = m;
+                if (s > alpha) {
+                    alpha = s;
+                    pvTable[ ply ][ ply ] = m;
+                    System.arraycopy( pvTable[ ply + 1 ], ply + 1, pvTable[ ply ], ply + 1, pvLength[ ply + 1 ] - ply - 1 );
+                    pvLength[ ply ] = Math.max( ply + 1, pvLength[ ply + 1 ] );
+                    if (s >= beta) {
+                        if (!Move.isCapture( m ))  order.cutoff( b, m, depth, ply );
+                        if (SearchStats.ENABLED) {
+                            stats.add( SearchStats.BETA_CUTOFFS );
+                            if (i == 0)  stats.add( SearchStats.FIRST_MOVE_CUTOFFS );
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+
+        int bound = (best >= beta) ? TranspositionTable.BOUND_LOWER
+                  : (best > alphaOrig) ? TranspositionTable.BOUND_EXACT : TranspositionTable.BOUND_UPPER;
+        tt.store( key, depth, bound, toTable( best, ply ), Move.squares( bestMove ) );
+        if (SearchStats.ENABLED)  stats.add( SearchStats.TT_STORES );
+        return best;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the static score of b for the player to move. */
+    private int evaluate ( Board b ) {
+        if (SearchStats.ENABLED)  stats.add( SearchStats.EVALS );
+        return -Board.h( b );
+    }
+    //-----------------------------------------------------------------------
+    /** @return the score of a finished game for the player to move, adjusted
+     *  by the distance (ply) from the root.
+     */
+    private int terminal ( Board b, int ply ) {
+        int s = evaluate( b );
+        if (s <= -INF)  return -INF + ply;
+        if (s >= INF)   return INF - ply;
+        return s;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the score of tablebase outcome v at ply: a win/loss in d
+     *  plies from there is one in ply+d from the root.
+     */
+    private static int fromTablebase ( int v, int ply ) {
+        if (Tablebase.isWin( v ))   return INF - ply - Tablebase.distance( v );
+        if (Tablebase.isLoss( v ))  return -INF + ply + Tablebase.distance( v );
+        return 0;
+    }
+    //-----------------------------------------------------------------------
+    /** win/loss scores are stored relative to the node, not the root. */
+    private static int toTable ( int s, int ply ) {
+        if (s >= WIN_BOUND)   return s + ply;
+        if (s <= -WIN_BOUND)  return s - ply;
+        return s;
+    }
+    //-----------------------------------------------------------------------
+    private static int fromTable ( int s, int ply ) {
+        if (s >= WIN_BOUND)   return s - ply;
+        if (s <= -WIN_BOUND)  return s + ply;
+        return s;
+    }
+
+}  //end class Search
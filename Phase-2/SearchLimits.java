@@ -0,0 +1,147 @@
+package com.dsq2022.game;
+
+/**
+ * Limits (and resources) for one Search, e.g.,
+ * <pre><code>
+ *   board.chooseBest( new SearchLimits().depth( 8 ).nodes( 2_000_000 ) );
+ * </code></pre>
+ * or, with a time limit,
+ * <pre><code>
+ *   board.chooseBest( new SearchLimits().clock( remaining, increment, plies ) );
+ * </code></pre>
+ * A limit of 0 means "no limit" (but a search always stops at MAX_DEPTH).
+ */
+public final class SearchLimits {
+    public static final int   MAX_DEPTH = 64;  ///< deepest iteration ever searched
+
+    private int     depth = MAX_DEPTH;
+    private long    nodes = 0;
+    private int     hashMegabytes = TranspositionTable.DEFAULT_MB;
+    private int     threads = 1;
+    private TranspositionTable  table = null;
+    private Tablebase  tablebase = null;
+    private OpeningBook  book = null;
+    private long    moveMillis = 0;
+    private long    clockMillis = 0;
+    private long    incrementMillis = 0;
+    private int     moveNumber = 0;
+    //-----------------------------------------------------------------------
+    /** search at most this many plies deep (1..MAX_DEPTH). */
+    public SearchLimits depth ( int depth ) {
+        if (depth < 1 || depth > MAX_DEPTH)  throw new IllegalArgumentException( "depth must be in 1.." + MAX_DEPTH + ": " + depth );
+        this.depth = depth;
+        return this;
+    }
+    //-----------------------------------------------------------------------
+    /** stop after (about) this many nodes; 0 for no limit. the result is
+     *  that of the last completed iteration.
+     */
+    public SearchLimits nodes ( long nodes ) {
+        if (nodes < 0)  throw new IllegalArgumentException( "nodes must be >= 0: " + nodes );
+        this.nodes = nodes;
+        return this;
+    }
+    //-----------------------------------------------------------------------
+    /** size of the transposition table to allocate if none is given. */
+    public SearchLimits hashMegabytes ( int megabytes ) {
+        if (megabytes < 1)  throw new IllegalArgumentException( "megabytes must be >= 1: " + megabytes );
+        this.hashMegabytes = megabytes;
+        return this;
+    }
+    //-----------------------------------------------------------------------
+    /** search with this many threads (see ParallelSearch); 1 by default. */
+    public SearchLimits threads ( int threads ) {
+        if (threads < 1)  throw new IllegalArgumentException( "threads must be >= 1: " + threads );
+        this.threads = threads;
+        return this;
+    }
+    //-----------------------------------------------------------------------
+    /** use (and keep filling) this transposition table, e.g., across moves. */
+    public SearchLimits table ( TranspositionTable table ) {
+        this.table = table;
+        return this;
+    }
+    //-----------------------------------------------------------------------
+    /** look up positions with few enough pieces in these endgame tables. */
+    public SearchLimits tablebase ( Tablebase tablebase ) {
+        this.tablebase = tablebase;
+        return this;
+    }
+    //-----------------------------------------------------------------------
+    /** play a move of this opening book, if it has one, instead of searching
+     *  (see Board.chooseBest).
+     */
+    public SearchLimits book ( OpeningBook book ) {
+        this.book = book;
+        return this;
+    }
+    //-----------------------------------------------------------------------
+    /** answer within this many ms (see TimeManager); 0 for no time limit. */
+    public SearchLimits moveMillis ( long millis ) {
+        if (millis < 0)  throw new IllegalArgumentException( "millis must be >= 0: " + millis );
+        this.moveMillis = millis;
+        return this;
+    }
+    //-----------------------------------------------------------------------
+    /** take the time for this move from a clock (see TimeManager): the time
+     *  left, the time added after each move and the number of moves
+     *  (plies) played so far.
+     */
+    public SearchLimits clock ( long remainingMillis, long incrementMillis, int moveNumber ) {
+        if (remainingMillis < 0 || incrementMillis < 0 || moveNumber < 0) {
+            throw new IllegalArgumentException( "clock values must be >= 0" );
+        }
+        this.clockMillis = remainingMillis;
+        this.incrementMillis = incrementMillis;
+        this.moveNumber = moveNumber;
+        return this;
+    }
+    //-----------------------------------------------------------------------
+    public int depth ( ) {
+        return depth;
+    }
+    //-----------------------------------------------------------------------
+    public long nodes ( ) {
+        return nodes;
+    }
+    //-----------------------------------------------------------------------
+    public int hashMegabytes ( ) {
+        return hashMegabytes;
+    }
+    //-----------------------------------------------------------------------
+    public int threads ( ) {
+        return threads;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the transposition table to use, or null to allocate one. */
+    public TranspositionTable table ( ) {
+        return table;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the endgame tables to probe, or null for none. */
+    public Tablebase tablebase ( ) {
+        return tablebase;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the opening book to probe first, or null for none. */
+    public OpeningBook book ( ) {
+        return book;
+    }
+    //-----------------------------------------------------------------------
+    public long moveMillis ( ) {
+        return moveMillis;
+    }
+    //-----------------------------------------------------------------------
+    public long clockMillis ( ) {
+        return clockMillis;
+    }
+    //-----------------------------------------------------------------------
+    public long incrementMillis ( ) {
+        return incrementMillis;
+    }
+    //-----------------------------------------------------------------------
+    public int moveNumber ( ) {
+        return moveNumber;
+    }
+
+}  //end class SearchLimits
@@ -0,0 +1,71 @@
+package com.dsq2022.game;
+
+/**
+ * The outcome of a Search: the best move, its score (from the point of view
+ * of the player to move at the root) and the principal variation.
+ */
+public final class SearchResult {
+    private final int     bestMove;
+    private final int     score;
+    private final int[]   pv;
+    private final int     depth;
+    private final long    nodes;
+    private final long    millis;
+    //-----------------------------------------------------------------------
+    public SearchResult ( int bestMove, int score, int[] pv, int depth, long nodes, long millis ) {
+        this.bestMove = bestMove;
+        this.score = score;
+        this.pv = pv.clone();
+        this.depth = depth;
+        this.nodes = nodes;
+        this.millis = millis;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the best move (see Move), or Move.NONE if there are no moves. */
+    public int bestMove ( ) {
+        return bestMove;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the score of the best move for the player to move. */
+    public int score ( ) {
+        return score;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the principal variation (best line of play), starting with bestMove. */
+    public int[] pv ( ) {
+        return pv.clone();
+    }
+    //-----------------------------------------------------------------------
+    /** @return the depth of the last completed iteration. */
+    public int depth ( ) {
+        return depth;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the number of nodes searched. */
+    public long nodes ( ) {
+        return nodes;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the time spent searching in ms. */
+    public long millis ( ) {
+        return millis;
+    }
+    //-----------------------------------------------------------------------
+    /** @return nodes per second. */
+    public long nps ( ) {
+        return millis == 0 ? nodes * 1000 : nodes * 1000 / millis;
+    }
+    //-----------------------------------------------------------------------
+    @Override
+    public String toString ( ) {
+        StringBuilder sb = new StringBuilder();
+        sb.append( "depth " ).append( depth )
+          .append( " score " ).append( score )
+          .append( " nodes " ).append( nodes )
+          .append( " nps " ).append( nps() )
+          .append( " pv" );
+        for (int m : pv)  sb.append( ' ' ).append( Move.toString( m ) );
+        return sb.toString();
+    }
+
+}  //end class SearchResult
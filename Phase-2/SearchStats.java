@@ -0,0 +1,220 @@
+package com.dsq2022.game;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+
+/**
+ * Counters of what Search does (nodes, cutoffs, transposition table use,
+ * evaluations, move generation, iterations), to see why a search got
+ * slower.
+ *
+ * Off unless the JVM is started with -Ddsq.search.stats=true. ENABLED is a
+ * constant, so when it is off the JIT removes the counting code and the
+ * search runs as fast as without it.
+ *
+ * When on, each thread counts into its own Stripe (plain long increments,
+ * no sharing and no atomics); snapshot adds up the stripes of all threads
+ * (a stripe being written may be read a few counts behind). Two snapshots
+ * give the rates of the time in between (see Snapshot.minus).
+ *
+ * The counters are also shown to JDK Flight Recorder: a SearchStats event
+ * with the totals every second, and a SearchIteration event (with its
+ * duration) for each completed iteration. E.g.,
+ * <pre>
+ *   java -Ddsq.search.stats=true -XX:StartFlightRecording=filename=search.jfr ...
+ *   jfr print --events com.dsq2022.SearchIteration search.jfr
+ * </pre>
+ */
+public final class SearchStats {
+    public static final boolean  ENABLED = Boolean.getBoolean( "dsq.search.stats" );
+
+    public static final int  NODES = 0;               ///< nodes searched
+    public static final int  LEAF_NODES = 1;          ///< nodes at the horizon (depth 0)
+    public static final int  BETA_CUTOFFS = 2;        ///< moves that failed high
+    public static final int  FIRST_MOVE_CUTOFFS = 3;  ///< ... that were the first move tried
+    public static final int  TT_PROBES = 4;
+    public static final int  TT_HITS = 5;             ///< probes that found the position
+    public static final int  TT_CUTOFFS = 6;          ///< hits that ended the node
+    public static final int  TT_STORES = 7;
+    public static final int  EVALS = 8;               ///< calls of Board.h
+    public static final int  MOVEGENS = 9;            ///< calls of Board.generateMoves
+    public static final int  MOVES = 10;              ///< moves generated
+    public static final int  ITERATIONS = 11;         ///< completed iterations
+    public static final int  ITERATION_NANOS = 12;    ///< time in completed iterations
+    public static final int  COUNTERS = 13;
+
+    private static final String[]  NAMES = {
+        "nodes", "leafNodes", "betaCutoffs", "firstMoveCutoffs", "ttProbes", "ttHits", "ttCutoffs",
+        "ttStores", "evals", "moveGens", "moves", "iterations", "iterationNanos" };
+
+    /// the stripes of all threads that ever counted.
+    private static final List< Stripe >  stripes = new CopyOnWriteArrayList<>();
+    private static final ThreadLocal< Stripe >  stripe = ThreadLocal.withInitial( () -> {
+        Stripe s = new Stripe();
+        stripes.add( s );
+        return s;
+    } );
+
+    static {
+        if (ENABLED)  FlightRecorder.addPeriodicEvent( StatsEvent.class, SearchStats::emit );
+    }
+
+    private SearchStats ( ) { }
+    //=======================================================================
+    /** The counters of one thread, written by that thread only. */
+    public static final class Stripe {
+        final long[]  count = new long[ COUNTERS ];
+
+        private Stripe ( ) { }
+
+        /** count one more of counter. */
+        public void add ( int counter ) {
+            count[ counter ]++;
+        }
+
+        /** count n more of counter. */
+        public void add ( int counter, long n ) {
+            count[ counter ] += n;
+        }
+    }
+    //-----------------------------------------------------------------------
+    /** @return the stripe of the calling thread (only call it if ENABLED). */
+    public static Stripe stripe ( ) {
+        return stripe.get();
+    }
+    //-----------------------------------------------------------------------
+    /** @return the name of counter. */
+    public static String name ( int counter ) {
+        return NAMES[ counter ];
+    }
+    //=======================================================================
+    /** The totals of all threads at some time (all 0 unless ENABLED). */
+    public static final class Snapshot {
+        private final long[]  count;
+        private final long    nanos;  ///< System.nanoTime() when taken
+
+        private Snapshot ( long[] count, long nanos ) {
+            this.count = count;
+            this.nanos = nanos;
+        }
+
+        /** @return the value of counter. */
+        public long get ( int counter ) {
+            return count[ counter ];
+        }
+
+        /** @return the counts since earlier (with the time in between). */
+        public Snapshot minus ( Snapshot earlier ) {
+            long[] d = new long[ COUNTERS ];
+            for (int i = 0; i < COUNTERS; i++)  d[ i ] = count[ i ] - earlier.count[ i ];
+            return new Snapshot( d, nanos - earlier.nanos );
+        }
+
+        /** @return the nodes per second of a difference (see minus). */
+        public double nodesPerSecond ( ) {
+            return (nanos <= 0) ? 0 : count[ NODES ] * 1e9 / nanos;
+        }
+
+        /** @return the share of the beta cutoffs made by the first move. */
+        public double firstMoveCutoffRate ( ) {
+            return ratio( FIRST_MOVE_CUTOFFS, BETA_CUTOFFS );
+        }
+
+        /** @return the share of the table probes that found the position. */
+        public double ttHitRate ( ) {
+            return ratio( TT_HITS, TT_PROBES );
+        }
+
+        /** @return the mean ms per completed iteration. */
+        public double millisPerIteration ( ) {
+            return ratio( ITERATION_NANOS, ITERATIONS ) / 1e6;
+        }
+
+        private double ratio ( int a, int b ) {
+            return (count[ b ] == 0) ? 0 : (double) count[ a ] / count[ b ];
+        }
+
+        @Override
+        public String toString ( ) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < COUNTERS; i++)  sb.append( NAMES[ i ] ).append( ' ' ).append( count[ i ] ).append( ' ' );
+            return sb.append( String.format( "firstMoveCutoffRate %.3f ttHitRate %.3f",
+                                             firstMoveCutoffRate(), ttHitRate() ) ).toString();
+        }
+    }
+    //-----------------------------------------------------------------------
+    /** @return the totals of all threads now. */
+    public static Snapshot snapshot ( ) {
+        long[] total = new long[ COUNTERS ];
+        for (Stripe s : stripes) {
+            for (int i = 0; i < COUNTERS; i++)  total[ i ] += s.count[ i ];
+        }
+        return new Snapshot( total, System.nanoTime() );
+    }
+    //=======================================================================
+    /** A completed iteration of a Search (see Search.iterate). */
+    @Name( "com.dsq2022.SearchIteration" )
+    @Label( "Search Iteration" )
+    @Category( { "DSQ", "Search" } )
+    @StackTrace( false )
+    public static final class IterationEvent extends Event {
+        @Label( "Depth" )         int     depth;
+        @Label( "Score" )         int     score;
+        @Label( "Best Move" )     String  bestMove;
+        @Label( "Nodes" )         long    nodes;
+        @Label( "Helper" )        int     helper;
+    }
+    //-----------------------------------------------------------------------
+    /** The totals of the counters, every second. */
+    @Name( "com.dsq2022.SearchStats" )
+    @Label( "Search Statistics" )
+    @Category( { "DSQ", "Search" } )
+    @Description( "Totals of the search counters of all threads" )
+    @Period( "1 s" )
+    @StackTrace( false )
+    static final class StatsEvent extends Event {
+        @Label( "Nodes" )               long  nodes;
+        @Label( "Leaf Nodes" )          long  leafNodes;
+        @Label( "Beta Cutoffs" )        long  betaCutoffs;
+        @Label( "First Move Cutoffs" )  long  firstMoveCutoffs;
+        @Label( "TT Probes" )           long  ttProbes;
+        @Label( "TT Hits" )             long  ttHits;
+        @Label( "TT Cutoffs" )          long  ttCutoffs;
+        @Label( "TT Stores" )           long  ttStores;
+        @Label( "Evaluations" )         long  evals;
+        @Label( "Move Generations" )    long  moveGens;
+        @Label( "Moves Generated" )     long  moves;
+        @Label( "Iterations" )          long  iterations;
+        @Label( "Iteration Time (ns)" ) long  iterationNanos;
+    }
+    //-----------------------------------------------------------------------
+    /** emit a StatsEvent with the totals now. */
+    private static void emit ( ) {
+        Snapshot s = snapshot();
+        StatsEvent e = new StatsEvent();
+        e.nodes = s.get( NODES );
+        e.leafNodes = s.get( LEAF_NODES );
+        e.betaCutoffs = s.get( BETA_CUTOFFS );
+        e.firstMoveCutoffs = s.get( FIRST_MOVE_CUTOFFS );
+        e.ttProbes = s.get( TT_PROBES );
+        e.ttHits = s.get( TT_HITS );
+        e.ttCutoffs = s.get( TT_CUTOFFS );
+        e.ttStores = s.get( TT_STORES );
+        e.evals = s.get( EVALS );
+        e.moveGens = s.get( MOVEGENS );
+        e.moves = s.get( MOVES );
+        e.iterations = s.get( ITERATIONS );
+        e.iterationNanos = s.get( ITERATION_NANOS );
+        e.commit();
+    }
+
+}  //end class SearchStats
@@ -0,0 +1,224 @@
+package com.dsq2022.game;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Endgame tablebases: the exact outcome of every position with few pieces
+ * (see TablebaseGenerator), probed through memory-mapped files.
+ *
+ * There is one table (file) per set of pieces, e.g., bElephant-bRat-rLion.
+ * It holds one byte per position, indexed by the square (0..62) of each of
+ * its pieces (in ordinal order) and the player to move:
+ * <pre>
+ *   index = ((sq[0] * 63 + sq[1]) * 63 + ... + sq[k-1]) * 2 + (bluesTurn ? 1 : 0)
+ * </pre>
+ * and the byte is the outcome for the player to move:
+ * <pre>
+ *   0         draw (no side can force a win)
+ *   1..127    win in that many plies
+ *   128+d     loss in d plies (d = 0: the game is over, or there is no move)
+ *   255       not a position (e.g., a lion in the water, two pieces on one square),
+ *             or unknown (a win or loss too long for the table, see TablebaseGenerator)
+ * </pre>
+ * where a win is reaching the opponent's den or taking its last piece, i.e.,
+ * the distance is to isRedWinner/isBlueWinner, always with best play.
+ *
+ * File layout (big-endian):
+ * <pre>
+ *   offset  0  int    MAGIC ("DSQT")
+ *           4  short  VERSION
+ *           6  byte   k, the number of pieces
+ *           7  byte   1 if complete, 0 while being generated
+ *           8  byte[ MAX_PIECES ]  the ordinals of the pieces (0xFF unused)
+ *          12  int    the last completed pass (see TablebaseGenerator)
+ *          16  the size( k ) outcome bytes
+ * </pre>
+ * A Tablebase is immutable once opened and may be probed from any number of
+ * threads.
+ */
+public final class Tablebase {
+    public static final String  EXTENSION = ".dsqt";
+    public static final int     MAGIC = 0x44535154;  ///< "DSQT"
+    public static final short   VERSION = 1;
+    public static final int     HEADER_BYTES = 16;
+    public static final int     MAX_PIECES = 4;  ///< 63^4 * 2 bytes is 31.5 MB per table
+
+    public static final int     NOT_FOUND = -1;  ///< probe: no table for the position
+
+    static final int  SQUARES = BitBoard.SQUARES;
+    static final int  WIN_MAX = 127;   ///< longest win that can be stored
+    static final int  LOSS = 128;      ///< LOSS + d: loss in d plies
+    static final int  LOSS_MAX = 126;  ///< longest loss that can be stored
+    static final int  INVALID = 255;
+
+    private static final Piece[]  pieces = Piece.values();
+
+    /// the tables by signature (see signature).
+    private final Map< Long, ByteBuffer >  tables = new HashMap<>();
+    private int  maxPieces;
+    //=======================================================================
+    /** Map every complete table (file ending in EXTENSION) in dir.
+     *  Incomplete ones (still being generated) are skipped.
+     */
+    public Tablebase ( Path dir ) throws IOException {
+        try (DirectoryStream< Path > files = Files.newDirectoryStream( dir, "*" + EXTENSION )) {
+            for (Path f : files) {
+                try (FileChannel ch = FileChannel.open( f, StandardOpenOption.READ )) {
+                    ByteBuffer h = readHeader( ch );
+                    if (h.get( 7 ) == 0)  continue;
+                    Piece[] sig = pieces( h );
+                    MappedByteBuffer data = ch.map( FileChannel.MapMode.READ_ONLY, HEADER_BYTES, size( sig.length ) );
+                    tables.put( signature( sig ), data );
+                    maxPieces = Math.max( maxPieces, sig.length );
+                }
+            }
+        }
+    }
+    //-----------------------------------------------------------------------
+    /** @return the number of tables. */
+    public int size ( ) {
+        return tables.size();
+    }
+    //-----------------------------------------------------------------------
+    /** @return the most pieces of any table (0 if there are none). */
+    public int maxPieces ( ) {
+        return maxPieces;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the outcome of b for the player to move (see above), or
+     *  NOT_FOUND if there is no table for its pieces or its outcome is unknown.
+     */
+    public int probe ( Board b ) {
+        int k = b.countBlue() + b.countRed();
+        if (k > maxPieces || k == 0)  return NOT_FOUND;
+
+        int[] ord = new int[ MAX_PIECES ];
+        int[] sq = new int[ MAX_PIECES ];
+        int n = 0;
+        for (int s = 0; s < SQUARES; s++) {
+            Piece p = b.getPiece( s / Board.fCols, s % Board.fCols );
+            if (Board.getRank( p ) == 0)  continue;
+            int i = n++;  //insertion sort by ordinal
+            while (i > 0 && ord[ i - 1 ] > p.ordinal()) {
+                ord[ i ] = ord[ i - 1 ];
+                sq[ i ] = sq[ i - 1 ];
+                i--;
+            }
+            ord[ i ] = p.ordinal();
+            sq[ i ] = s;
+        }
+        long sig = 0;
+        for (int i = 0; i < n; i++)  sig |= 1L << ord[ i ];
+        if (Long.bitCount( sig ) != n)  return NOT_FOUND;  //two of one piece
+
+        ByteBuffer t = tables.get( sig );
+        if (t == null)  return NOT_FOUND;
+        int v = t.get( index( sq, n, b.bluesTurn ) ) & 0xFF;
+        return (v == INVALID) ? NOT_FOUND : v;
+    }
+    //=======================================================================
+    /** @return true if outcome v (see probe) is a win for the player to move. */
+    public static boolean isWin ( int v ) {
+        return v > 0 && v < LOSS;
+    }
+    //-----------------------------------------------------------------------
+    /** @return true if outcome v is a loss for the player to move. */
+    public static boolean isLoss ( int v ) {
+        return v >= LOSS && v < INVALID;
+    }
+    //-----------------------------------------------------------------------
+    /** @return true if outcome v is a draw. */
+    public static boolean isDraw ( int v ) {
+        return v == 0;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the plies to the end of the game of outcome v (with best play). */
+    public static int distance ( int v ) {
+        return isLoss( v ) ? v - LOSS : isWin( v ) ? v : 0;
+    }
+    //=======================================================================
+    /** @return the number of positions (bytes) of a table of k pieces. */
+    static int size ( int k ) {
+        int n = 2;
+        for (int i = 0; i < k; i++)  n *= SQUARES;
+        return n;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the index of the position with the k pieces on sq[ 0..k-1 ]. */
+    static int index ( int[] sq, int k, boolean bluesTurn ) {
+        int i = 0;
+        for (int j = 0; j < k; j++)  i = i * SQUARES + sq[ j ];
+        return i * 2 + (bluesTurn ? 1 : 0);
+    }
+    //-----------------------------------------------------------------------
+    /** @return a bit (1 &lt;&lt; ordinal) for each of the pieces. */
+    static long signature ( Piece[] sig ) {
+        long s = 0;
+        for (Piece p : sig)  s |= 1L << p.ordinal();
+        return s;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the file name of the table of the pieces (in ordinal order). */
+    static String fileName ( Piece[] sig ) {
+        StringBuilder sb = new StringBuilder();
+        for (Piece p : sig) {
+            if (sb.length() > 0)  sb.append( '-' );
+            sb.append( p.name() );
+        }
+        return sb.append( EXTENSION ).toString();
+    }
+    //-----------------------------------------------------------------------
+    /** @return the pieces of the table with the given header. */
+    static Piece[] pieces ( ByteBuffer h ) {
+        Piece[] sig = new Piece[ h.get( 6 ) ];
+        for (int i = 0; i < sig.length; i++)  sig[ i ] = pieces[ h.get( 8 + i ) ];
+        return sig;
+    }
+    //-----------------------------------------------------------------------
+    /** write the header (at offset 0, without moving the channel's position). */
+    static void writeHeader ( FileChannel ch, Piece[] sig, boolean complete, int pass ) throws IOException {
+        ByteBuffer h = ByteBuffer.allocate( HEADER_BYTES );
+        h.putInt( MAGIC ).putShort( VERSION ).put( (byte) sig.length ).put( (byte) (complete ? 1 : 0) );
+        byte[] ord = new byte[ MAX_PIECES ];
+        Arrays.fill( ord, (byte) 0xFF );
+        for (int i = 0; i < sig.length; i++)  ord[ i ] = (byte) sig[ i ].ordinal();
+        h.put( ord ).putInt( pass ).flip();
+        long at = 0;
+        while (h.hasRemaining())  at += ch.write( h, at );
+    }
+    //-----------------------------------------------------------------------
+    /** read and check the header.
+     *  @throws IOException if this is not a (long enough) table file.
+     */
+    static ByteBuffer readHeader ( FileChannel ch ) throws IOException {
+        ByteBuffer h = ByteBuffer.allocate( HEADER_BYTES );
+        long at = 0;
+        while (h.hasRemaining()) {
+            int n = ch.read( h, at );
+            if (n < 0)  throw new IOException( "truncated header" );
+            at += n;
+        }
+        h.flip();
+        if (h.getInt( 0 ) != MAGIC)  throw new IOException( "not a tablebase file" );
+        if (h.getShort( 4 ) != VERSION)  throw new IOException( "unsupported version " + h.getShort( 4 ) );
+        int k = h.get( 6 );
+        if (k < 2 || k > MAX_PIECES)  throw new IOException( "bad number of pieces " + k );
+        for (int i = 0; i < k; i++) {
+            int o = h.get( 8 + i ) & 0xFF;
+            if (o >= pieces.length || (i > 0 && o <= (h.get( 7 + i ) & 0xFF)))  throw new IOException( "bad pieces" );
+        }
+        if (ch.size() < HEADER_BYTES + (long) size( k ))  throw new IOException( "truncated table" );
+        return h;
+    }
+
+}  //end class Tablebase
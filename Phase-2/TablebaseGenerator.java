@@ -0,0 +1,441 @@
+package com.dsq2022.game;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Generates the Tablebase files by retrograde analysis.
+ *
+ * The table of a set of pieces needs the tables of every set with one
+ * piece less (reached by a capture), so those are generated (or mapped, if
+ * already there) first. A capture of a side's last piece, and a den entry,
+ * end the game (see isRedWinner/isBlueWinner) and need no table.
+ *
+ * Pass 0 marks the positions that are not positions (INVALID) and the ones
+ * that are lost for the player to move: the game is over, or there is no
+ * move. Each pass n = 1, 2, ... then looks at the moves of every unresolved
+ * position, using the outcomes of pass n-1 (and the smaller tables):
+ * <ul>
+ * <li>a move to a loss in d plies, with d+1 &lt;= n, wins in (the least) d+1;</li>
+ * <li>if every move leads to a win, in at most d plies, with d+1 &lt;= n,
+ *     the position is lost in d+1.</li>
+ * </ul>
+ * so a position is resolved exactly in the pass of its distance. Passes
+ * stop when one changes nothing (and no distance of a smaller table can
+ * still come into reach); what is left is a draw.
+ *
+ * A table holds wins of up to WIN_MAX plies and losses of up to LOSS_MAX.
+ * If pass WIN_MAX still changes something (or would store a longer loss),
+ * what is left may be a longer win or loss rather than a draw, so it is
+ * marked unknown (INVALID, which Tablebase.probe gives as NOT_FOUND)
+ * instead; so is what is left in a table that needs such a table, as its
+ * captures may reach an unknown position. The pass of such a table is
+ * saved as UNSURE.
+ *
+ * Each pass is split over the given number of threads, each with its own
+ * Board. The table is saved (marked incomplete, with its pass) at least
+ * every SAVE_MILLIS, so an interrupted generation resumes from the last
+ * saved pass instead of starting over. Only the table being generated (and
+ * a copy of its last pass) is on the heap: finished tables, including the
+ * smaller ones, are mapped from their files.
+ *
+ * From the command line:
+ * <pre>
+ *   java com.dsq2022.game.TablebaseGenerator [-threads n] dir k
+ *   java com.dsq2022.game.TablebaseGenerator [-threads n] dir piece ...
+ * </pre>
+ * generates every table of 2..k pieces (with both colors), or the one of
+ * the given pieces (e.g., bElephant bRat rLion), into dir.
+ */
+public final class TablebaseGenerator {
+    private static final int   SQUARES = Tablebase.SQUARES;
+    private static final long  SAVE_MILLIS = 10_000;
+    private static final int   UNSURE = Integer.MAX_VALUE;  ///< the pass of a table with unknown positions
+
+    private final Path  dir;
+    private final int   threads;
+    /// the tables generated or mapped so far, by signature.
+    private final Map< Long, ByteBuffer >  done = new HashMap<>();
+    /// the signatures of the tables done with unknown positions (see above).
+    private final Set< Long >  unsure = new HashSet<>();
+    //=======================================================================
+    public TablebaseGenerator ( Path dir, int threads ) {
+        if (threads < 1)  throw new IllegalArgumentException( "threads must be >= 1: " + threads );
+        this.dir = dir;
+        this.threads = threads;
+    }
+    //-----------------------------------------------------------------------
+    /** generate (if not there yet) every table of 2..k pieces with at least
+     *  one piece of each color.
+     */
+    public void generateAll ( int k ) throws IOException {
+        if (k < 2 || k > Tablebase.MAX_PIECES)  throw new IllegalArgumentException( "k must be in 2.." + Tablebase.MAX_PIECES + ": " + k );
+        List< Piece > all = new ArrayList<>();
+        for (Piece p : Piece.values()) {
+            if (Board.getRank( p ) != 0)  all.add( p );
+        }
+        for (int n = 2; n <= k; n++)  generateAll( all, new Piece[ n ], 0, 0 );
+    }
+    //-----------------------------------------------------------------------
+    private void generateAll ( List< Piece > all, Piece[] sig, int at, int from ) throws IOException {
+        if (at == sig.length) {
+            if (hasBothColors( sig ))  table( sig.clone() );
+            return;
+        }
+        for (int i = from; i < all.size(); i++) {
+            sig[ at ] = all.get( i );
+            generateAll( all, sig, at + 1, i + 1 );
+        }
+    }
+    //-----------------------------------------------------------------------
+    /** generate (if not there yet) the table of the given pieces, and the
+     *  smaller ones it needs.
+     */
+    public void generate ( Piece... sig ) throws IOException {
+        Piece[] s = sig.clone();
+        Arrays.sort( s, Comparator.comparingInt( Piece::ordinal ) );
+        if (s.length < 2 || s.length > Tablebase.MAX_PIECES)  throw new IllegalArgumentException( "2.." + Tablebase.MAX_PIECES + " pieces" );
+        for (int i = 0; i < s.length; i++) {
+            if (Board.getRank( s[ i ] ) == 0)  throw new IllegalArgumentException( "not a piece: " + s[ i ] );
+            if (i > 0 && s[ i ] == s[ i - 1 ])  throw new IllegalArgumentException( "more than one " + s[ i ] );
+        }
+        if (!hasBothColors( s ))  throw new IllegalArgumentException( "the game is over without pieces of both colors" );
+        table( s );
+    }
+    //-----------------------------------------------------------------------
+    private static boolean hasBothColors ( Piece[] sig ) {
+        boolean red = false, blue = false;
+        for (Piece p : sig) {
+            if (Board.getColor( p ) == GameColor.Blue)  blue = true;
+            else                                         red = true;
+        }
+        return red && blue;
+    }
+    //=======================================================================
+    /** @return the (complete) table of sig: already done, mapped from its
+     *  file or generated now.
+     */
+    private ByteBuffer table ( Piece[] sig ) throws IOException {
+        long key = Tablebase.signature( sig );
+        ByteBuffer t = done.get( key );
+        if (t != null)  return t;
+
+        Path path = dir.resolve( Tablebase.fileName( sig ) );
+        byte[] resume = null;
+        int pass = -1;
+        if (Files.exists( path )) {
+            try (FileChannel ch = FileChannel.open( path, StandardOpenOption.READ )) {
+                ByteBuffer h = Tablebase.readHeader( ch );
+                if (h.get( 7 ) != 0) {
+                    if (h.getInt( 12 ) == UNSURE)  unsure.add( key );
+                    t = map( ch, sig.length );
+                    done.put( key, t );
+                    return t;
+                }
+            }
+        }
+
+        //the tables reached by a capture (null if that takes the last piece of a color)
+        ByteBuffer[] sub = new ByteBuffer[ sig.length ];
+        int subMax = 0;
+        boolean unknown = false;  //the smaller tables have unknown positions
+        for (int j = 0; j < sig.length; j++) {
+            Piece[] s = new Piece[ sig.length - 1 ];
+            for (int i = 0, n = 0; i < sig.length; i++) {
+                if (i != j)  s[ n++ ] = sig[ i ];
+            }
+            if (!hasBothColors( s ))  continue;
+            sub[ j ] = table( s );
+            subMax = Math.max( subMax, maxDistance( sub[ j ] ) );
+            unknown |= unsure.contains( Tablebase.signature( s ) );
+        }
+
+        if (Files.exists( path )) {  //resume it (once the smaller tables are off the heap)
+            try (FileChannel ch = FileChannel.open( path, StandardOpenOption.READ )) {
+                pass = Tablebase.readHeader( ch ).getInt( 12 );
+                resume = new byte[ Tablebase.size( sig.length ) ];
+                ByteBuffer buf = ByteBuffer.wrap( resume );
+                long at = Tablebase.HEADER_BYTES;
+                while (buf.hasRemaining()) {
+                    int n = ch.read( buf, at );
+                    if (n < 0)  throw new IOException( "truncated table" );
+                    at += n;
+                }
+            }
+        }
+
+        byte[] cur = (resume != null) ? resume : new byte[ Tablebase.size( sig.length ) ];
+        if (pass < 0) {
+            run( sig, sub, null, cur, 0 );
+            pass = 0;
+            save( path, sig, cur, false, pass );
+        }
+        byte[] prev = cur.clone();
+        long saved = System.currentTimeMillis();
+        boolean ranOut = true;  //pass WIN_MAX was reached and still changed something
+        for (int n = pass + 1; n <= Tablebase.WIN_MAX; n++) {
+            boolean changed = run( sig, sub, prev, cur, n );
+            pass = n;
+            if (!changed && n > subMax) {
+                ranOut = false;
+                break;
+            }
+            System.arraycopy( cur, 0, prev, 0, cur.length );
+            if (System.currentTimeMillis() - saved >= SAVE_MILLIS) {
+                save( path, sig, cur, false, pass );
+                saved = System.currentTimeMillis();
+            }
+        }
+        if (ranOut || unknown) {
+            for (int i = 0; i < cur.length; i++) {
+                if (cur[ i ] == 0)  cur[ i ] = (byte) Tablebase.INVALID;
+            }
+            pass = UNSURE;
+            unsure.add( key );
+        }
+        save( path, sig, cur, true, pass );
+        //keep the saved file (mapped) instead of the arrays
+        try (FileChannel ch = FileChannel.open( path, StandardOpenOption.READ )) {
+            t = map( ch, sig.length );
+        }
+        done.put( key, t );
+        return t;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the outcomes of the table file of k pieces open in ch, mapped. */
+    private static ByteBuffer map ( FileChannel ch, int k ) throws IOException {
+        return ch.map( FileChannel.MapMode.READ_ONLY, Tablebase.HEADER_BYTES, Tablebase.size( k ) );
+    }
+    //-----------------------------------------------------------------------
+    /** @return the longest distance in table t. */
+    private static int maxDistance ( ByteBuffer t ) {
+        int max = 0;
+        for (int i = 0; i < t.capacity(); i++) {
+            int v = t.get( i ) & 0xFF;
+            if (v != Tablebase.INVALID)  max = Math.max( max, Tablebase.distance( v ) );
+        }
+        return max;
+    }
+    //-----------------------------------------------------------------------
+    /** save the table (replacing the file only once it is written). */
+    private static void save ( Path path, Piece[] sig, byte[] data, boolean complete, int pass ) throws IOException {
+        Files.createDirectories( path.toAbsolutePath().getParent() );
+        Path tmp = path.resolveSibling( path.getFileName() + ".tmp" );
+        try (FileChannel ch = FileChannel.open( tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                StandardOpenOption.TRUNCATE_EXISTING )) {
+            Tablebase.writeHeader( ch, sig, complete, pass );
+            ByteBuffer buf = ByteBuffer.wrap( data );
+            long at = Tablebase.HEADER_BYTES;
+            while (buf.hasRemaining())  at += ch.write( buf, at );
+            ch.force( true );
+        }
+        Files.move( tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+    }
+    //-----------------------------------------------------------------------
+    /** run pass n (0 for the first) over all positions, split over the threads.
+     *  @return true if any position was resolved.
+     */
+    private boolean run ( Piece[] sig, ByteBuffer[] sub, byte[] prev, byte[] cur, int n ) throws IOException {
+        int size = cur.length;
+        int chunks = (threads == 1) ? 1 : threads * 8;
+        int per = (size + chunks - 1) / chunks;
+        if (threads == 1)  return new Worker( sig, sub, prev, cur ).pass( 0, size, n );
+
+        ExecutorService pool = Executors.newFixedThreadPool( threads, r -> {
+            Thread t = new Thread( r, "tablebase" );
+            t.setDaemon( true );
+            return t;
+        } );
+        try {
+            List< Future< Boolean > > futures = new ArrayList<>( chunks );
+            for (int from = 0; from < size; from += per) {
+                int lo = from, hi = Math.min( size, from + per );
+                futures.add( pool.submit( () -> new Worker( sig, sub, prev, cur ).pass( lo, hi, n ) ) );
+            }
+            boolean changed = false;
+            for (Future< Boolean > f : futures)  changed |= f.get();
+            return changed;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException( "tablebase generation interrupted", e );
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)  throw (RuntimeException) e.getCause();
+            throw new IOException( e.getCause() );
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+    //=======================================================================
+    /** The work of one thread on one range of positions (with its own Board). */
+    private static final class Worker {
+        private final Piece[]       sig;
+        private final ByteBuffer[]  sub;
+        private final byte[]        prev, cur;
+        private final Board         board = new Board();
+        private final MoveList      moves = new MoveList();
+        private final int[]         sq;     ///< the square of each piece
+        private final int[]         child;  ///< squares after a move
+        private final int[]         color;  ///< the no. of pieces of each color (red 0, blue 1)
+
+        Worker ( Piece[] sig, ByteBuffer[] sub, byte[] prev, byte[] cur ) {
+            this.sig = sig;
+            this.sub = sub;
+            this.prev = prev;
+            this.cur = cur;
+            this.sq = new int[ sig.length ];
+            this.child = new int[ sig.length ];
+            this.color = new int[ 2 ];
+            for (Piece p : sig)  color[ Board.getColor( p ) == GameColor.Blue ? 1 : 0 ]++;
+            for (int r = 0; r < Board.fRows; r++) {
+                for (int c = 0; c < Board.fCols; c++)  board.setPiece( r, c, Piece.rbNone );
+            }
+            Arrays.fill( sq, -1 );
+        }
+        //-------------------------------------------------------------------
+        /** pass n over the positions lo..hi-1.
+         *  @return true if any was resolved.
+         */
+        boolean pass ( int lo, int hi, int n ) {
+            boolean changed = false;
+            for (int i = lo; i < hi; i++) {
+                if (n > 0 && cur[ i ] != 0)  continue;
+                int v = (n == 0) ? initial( i ) : resolve( i, n );
+                if (v != 0) {
+                    cur[ i ] = (byte) v;
+                    changed = true;
+                }
+            }
+            return changed;
+        }
+        //-------------------------------------------------------------------
+        /** put the pieces of position i on the board.
+         *  @return false if i is not a position.
+         */
+        private boolean setup ( int i ) {
+            for (int j = 0; j < sq.length; j++) {  //take the last position's pieces off
+                if (sq[ j ] >= 0)  board.setPiece( sq[ j ] / Board.fCols, sq[ j ] % Board.fCols, Piece.rbNone );
+                sq[ j ] = -1;
+            }
+            board.bluesTurn = (i & 1) != 0;
+            int rest = i >>> 1;
+            long used = 0;
+            for (int j = sq.length - 1; j >= 0; j--) {
+                int s = rest % SQUARES;
+                rest /= SQUARES;
+                long bit = 1L << s;
+                Piece p = sig[ j ];
+                if ((used & bit) != 0)  return false;
+                if (Board.getRank( p ) != 1 && (MoveTables.WATER & bit) != 0)  return false;
+                if ((MoveTables.ownDen( Board.getColor( p ) ) & bit) != 0)  return false;
+                used |= bit;
+                sq[ j ] = s;
+                board.setPiece( s / Board.fCols, s % Board.fCols, p );
+            }
+            return true;
+        }
+        //-------------------------------------------------------------------
+        /** @return the outcome of position i known without looking at its
+         *  moves (pass 0), or 0.
+         */
+        private int initial ( int i ) {
+            if (!setup( i ))  return Tablebase.INVALID;
+            if (board.gameOver()) {
+                boolean blueWon = board.isBlueWinner();
+                if (board.isRedWinner() == blueWon)  return Tablebase.INVALID;
+                //lost if the other player won; the player to move can't have won already
+                return (blueWon != board.bluesTurn) ? Tablebase.LOSS : Tablebase.INVALID;
+            }
+            if (board.generateMoves( moves ) == 0)  return Tablebase.LOSS;
+            return 0;
+        }
+        //-------------------------------------------------------------------
+        /** @return the outcome of (unresolved) position i in pass n, or 0. */
+        private int resolve ( int i, int n ) {
+            setup( i );
+            int count = board.generateMoves( moves );
+            int minLoss = Tablebase.INVALID;  //none: minLoss + 1 > any pass
+            int maxWin = 0;
+            boolean allWins = true;
+            for (int m = 0; m < count; m++) {
+                int v = child( moves.get( m ) );
+                if (Tablebase.isLoss( v )) {
+                    minLoss = Math.min( minLoss, v - Tablebase.LOSS );
+                    allWins = false;
+                } else if (Tablebase.isWin( v )) {
+                    maxWin = Math.max( maxWin, v );
+                } else {
+                    allWins = false;
+                }
+            }
+            if (minLoss + 1 <= n)  return minLoss + 1;
+            if (allWins && maxWin + 1 <= n) {
+                if (maxWin + 1 > Tablebase.LOSS_MAX)  return Tablebase.INVALID;  //too long a loss: unknown
+                return Tablebase.LOSS + maxWin + 1;
+            }
+            return 0;
+        }
+        //-------------------------------------------------------------------
+        /** @return the outcome (from the previous pass, or a smaller table)
+         *  after move m, for the player to move then.
+         */
+        private int child ( int m ) {
+            if (Move.isDenEntry( m ))  return Tablebase.LOSS;
+            int from = Move.from( m ), to = Move.to( m );
+            boolean blue = !board.bluesTurn;  //to move after m
+            int captured = -1;
+            for (int j = 0; j < sq.length; j++) {
+                child[ j ] = (sq[ j ] == from) ? to : sq[ j ];
+                if (sq[ j ] == to)  captured = j;
+            }
+            if (captured < 0)  return prev[ Tablebase.index( child, child.length, blue ) ] & 0xFF;
+
+            if (color[ Board.getColor( sig[ captured ] ) == GameColor.Blue ? 1 : 0 ] == 1) {
+                return Tablebase.LOSS;  //that was the last piece of its color
+            }
+            for (int j = captured; j < child.length - 1; j++)  child[ j ] = child[ j + 1 ];
+            return sub[ captured ].get( Tablebase.index( child, child.length - 1, blue ) ) & 0xFF;
+        }
+    }
+    //=======================================================================
+    public static void main ( String[] args ) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        List< String > rest = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[ i ].equals( "-threads" ))  threads = Integer.parseInt( args[ ++i ] );
+            else                                 rest.add( args[ i ] );
+        }
+        if (rest.size() < 2) {
+            System.err.println( "usage: TablebaseGenerator [-threads n] dir (k | piece ...)" );
+            System.exit( 1 );
+        }
+        TablebaseGenerator g = new TablebaseGenerator( Paths.get( rest.get( 0 ) ), threads );
+        long start = System.currentTimeMillis();
+        if (rest.size() == 2 && rest.get( 1 ).matches( "\\d+" )) {
+            g.generateAll( Integer.parseInt( rest.get( 1 ) ) );
+        } else {
+            Piece[] sig = new Piece[ rest.size() - 1 ];
+            for (int i = 0; i < sig.length; i++)  sig[ i ] = Piece.valueOf( rest.get( i + 1 ) );
+            g.generate( sig );
+        }
+        System.out.println( g.done.size() + " tables in " + (System.currentTimeMillis() - start) + " ms" );
+    }
+
+}  //end class TablebaseGenerator
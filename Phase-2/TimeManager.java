@@ -0,0 +1,123 @@
+package com.dsq2022.game;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Time management for one Search (see SearchLimits.moveMillis and clock).
+ *
+ * A move gets two times:
+ * <ul>
+ * <li>hard: the deadline. A shared timer thread sets the search's stop
+ *     flag then, so the search itself only ever reads that flag (every
+ *     1024 nodes) and answers with its last completed iteration.</li>
+ * <li>soft: the target. After each iteration, the search stops if the next
+ *     one probably won't finish in time: when more than half of the soft
+ *     time is gone. The soft time shrinks while the best move stays the
+ *     same (STABLE iterations halve it) and grows when it changes (up to
+ *     the hard time).</li>
+ * </ul>
+ * With a fixed time per move, hard is that time and soft half of it. With
+ * a clock, soft is the remaining time spread over the moves expected to be
+ * left (by the move number) plus most of the increment, and hard is at most
+ * 4 times soft and a third of the remaining time. OVERHEAD_MILLIS is kept
+ * back for the caller.
+ */
+public final class TimeManager {
+    public static final long  OVERHEAD_MILLIS = 10;  ///< kept for the caller (e.g., to send the move)
+    private static final int  STABLE = 3;  ///< iterations with the same best move
+
+    /// one daemon thread for the hard deadlines of all searches.
+    private static final ScheduledThreadPoolExecutor  TIMER = new ScheduledThreadPoolExecutor( 1, r -> {
+        Thread t = new Thread( r, "search-timer" );
+        t.setDaemon( true );
+        return t;
+    } );
+
+    static {
+        TIMER.setRemoveOnCancelPolicy( true );
+    }
+
+    private final long  start = System.nanoTime();
+    private final long  soft, hard;  ///< in ms
+    private ScheduledFuture< ? >  deadline;
+
+    private int  lastMove = Move.NONE;
+    private int  stable = 0;
+    //=======================================================================
+    private TimeManager ( long soft, long hard ) {
+        this.soft = Math.max( 1, soft );
+        this.hard = Math.max( this.soft, hard );
+    }
+    //-----------------------------------------------------------------------
+    /** @return the time manager of limits, or null if they set no time. */
+    public static TimeManager of ( SearchLimits limits ) {
+        if (limits.moveMillis() > 0) {
+            long t = Math.max( 1, limits.moveMillis() - OVERHEAD_MILLIS );
+            return new TimeManager( t / 2, t );
+        }
+        if (limits.clockMillis() > 0) {
+            long left = Math.max( 1, limits.clockMillis() - OVERHEAD_MILLIS );
+            long inc = limits.incrementMillis();
+            int movesLeft = Math.max( 10, 50 - limits.moveNumber() / 4 );
+            long soft = left / movesLeft + inc * 3 / 4;
+            long hard = Math.min( 4 * soft, left / 3 + inc );
+            return new TimeManager( Math.min( soft, left ), Math.min( hard, left ) );
+        }
+        return null;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the time manager of limits with at most millis ms for the
+     *  move (0 for no more than the limits), or null if neither sets a time.
+     */
+    public static TimeManager of ( SearchLimits limits, long millis ) {
+        TimeManager time = of( limits );
+        if (millis <= 0)  return time;
+        long t = Math.max( 1, millis - OVERHEAD_MILLIS );
+        if (time == null)  return new TimeManager( t / 2, t );
+        return new TimeManager( Math.min( time.soft, t / 2 ), Math.min( time.hard, t ) );
+    }
+    //-----------------------------------------------------------------------
+    /** start the clock: set stop at the hard deadline. */
+    void start ( AtomicBoolean stop ) {
+        long remaining = hard - elapsed();
+        deadline = TIMER.schedule( () -> stop.set( true ), Math.max( 0, remaining ), TimeUnit.MILLISECONDS );
+    }
+    //-----------------------------------------------------------------------
+    /** the search is over: cancel the deadline. */
+    void finish ( ) {
+        if (deadline != null)  deadline.cancel( false );
+    }
+    //-----------------------------------------------------------------------
+    /** @return the ms since this was made. */
+    public long elapsed ( ) {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+    //-----------------------------------------------------------------------
+    public long soft ( ) {
+        return soft;
+    }
+    //-----------------------------------------------------------------------
+    public long hard ( ) {
+        return hard;
+    }
+    //-----------------------------------------------------------------------
+    /** an iteration finished with bestMove.
+     *  @return true if the search should not start another one.
+     */
+    boolean iterationDone ( int bestMove ) {
+        if (Move.squares( bestMove ) == Move.squares( lastMove )) {
+            stable++;
+        } else {
+            stable = 0;
+            lastMove = bestMove;
+        }
+        double target = soft;
+        if (stable >= STABLE)  target /= 2;
+        else if (stable == 0)  target = Math.min( hard, target * 1.5 );
+        return elapsed() >= target / 2;
+    }
+
+}  //end class TimeManager
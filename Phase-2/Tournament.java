@@ -0,0 +1,366 @@
+package com.dsq2022.game;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Plays a match between two engines, many games at a time.
+ *
+ * Games are played in pairs from the same opening (openingPlies random
+ * moves from Board(), by seed), once with each engine moving first (blue).
+ * A game ends when gameOver() (the winner is isBlueWinner/isRedWinner),
+ * when the player to move has no move, plays an invalid move or runs out of
+ * time (a loss), or after maxPlies plies (a draw).
+ *
+ * Each game gets new players from the engines, closed when it ends.
+ *
+ * Every game runs on its own thread: a virtual thread where the runtime has
+ * them (Java 21+, found by reflection), a pooled platform thread otherwise,
+ * with at most concurrency games at a time. The moves of CPU-bound players
+ * (see Player.cpuBound) run on a fixed pool of threads (one per core by
+ * default), so the number of searches never exceeds the cores however many
+ * games wait; other players are asked on the game's thread.
+ *
+ * Time control: a player has moveMillis ms per move (which it is told, see
+ * Player.move), counted from when its move starts running (not while it
+ * waits for a CPU thread). Then it is stopped (and its thread interrupted)
+ * and has GRACE_MILLIS more to answer (a stopped Search answers its best
+ * move so far) before it loses on time.
+ *
+ * Each finished game is written at once to results (if any), as one line:
+ * <pre>
+ *   game  blue  red  result  reason  plies  move ...
+ * </pre>
+ * with result "1-0" (blue won), "0-1" or "1/2". With sprt set, no more games
+ * are started once the test decides (see MatchStats.sprt).
+ *
+ * For example:
+ * <pre><code>
+ *   Tournament t = new Tournament(
+ *       new Tournament.Engine( "d5", () -&gt; Player.search( new SearchLimits().depth( 5 ).hashMegabytes( 8 ) ) ),
+ *       new Tournament.Engine( "d4", () -&gt; Player.search( new SearchLimits().depth( 4 ).hashMegabytes( 8 ) ) ) )
+ *       .games( 1000 ).moveMillis( 200 ).results( System.out );
+ *   MatchStats stats = t.run();
+ * </code></pre>
+ */
+public final class Tournament {
+    public static final long  GRACE_MILLIS = 100;  ///< time allowed after stop
+
+    /** A named engine: makes a new Player for each game. */
+    public static final class Engine {
+        private final String              name;
+        private final Supplier< Player >  players;
+
+        public Engine ( String name, Supplier< Player > players ) {
+            this.name = name;
+            this.players = players;
+        }
+
+        public String name ( ) {
+            return name;
+        }
+    }
+
+    private final Engine  first, second;
+    private int     games = 2;
+    private long    moveMillis = 1000;
+    private int     threads = Runtime.getRuntime().availableProcessors();
+    private int     concurrency = 0;  ///< 0 for 2 * threads
+    private int     openingPlies = 4;
+    private int     maxPlies = 300;
+    private long    seed = 2022;
+    private Appendable  results = null;
+    private double[]    sprt = null;  ///< elo0, elo1, alpha, beta
+
+    private final MatchStats     stats = new MatchStats();
+    private final AtomicBoolean  decided = new AtomicBoolean();
+    //=======================================================================
+    public Tournament ( Engine first, Engine second ) {
+        this.first = first;
+        this.second = second;
+    }
+    //-----------------------------------------------------------------------
+    /** play this many games (rounded up to pairs). */
+    public Tournament games ( int games ) {
+        if (games < 1)  throw new IllegalArgumentException( "games must be >= 1: " + games );
+        this.games = games + (games & 1);
+        return this;
+    }
+    //-----------------------------------------------------------------------
+    /** time per move in ms. */
+    public Tournament moveMillis ( long millis ) {
+        if (millis < 1)  throw new IllegalArgumentException( "millis must be >= 1: " + millis );
+        this.moveMillis = millis;
+        return this;
+    }
+    //-----------------------------------------------------------------------
+    /** the number of threads for CPU-bound moves (one per core by default). */
+    public Tournament threads ( int threads ) {
+        if (threads < 1)  throw new IllegalArgumentException( "threads must be >= 1: " + threads );
+        this.threads = threads;
+        return this;
+    }
+    //-----------------------------------------------------------------------
+    /** the most games played at a time (2 * threads by default). */
+    public Tournament concurrency ( int games ) {
+        if (games < 1)  throw new IllegalArgumentException( "concurrency must be >= 1: " + games );
+        this.concurrency = games;
+        return this;
+    }
+    //-----------------------------------------------------------------------
+    /** the number of random plies of each opening. */
+    public Tournament openingPlies ( int plies ) {
+        if (plies < 0)  throw new IllegalArgumentException( "plies must be >= 0: " + plies );
+        this.openingPlies = plies;
+        return this;
+    }
+    //-----------------------------------------------------------------------
+    /** a game is a draw after this many plies. */
+    public Tournament maxPlies ( int plies ) {
+        if (plies < 1)  throw new IllegalArgumentException( "plies must be >= 1: " + plies );
+        this.maxPlies = plies;
+        return this;
+    }
+    //-----------------------------------------------------------------------
+    /** the seed of the openings. */
+    public Tournament seed ( long seed ) {
+        this.seed = seed;
+        return this;
+    }
+    //-----------------------------------------------------------------------
+    /** write each game (see above) here as soon as it ends. */
+    public Tournament results ( Appendable out ) {
+        this.results = out;
+        return this;
+    }
+    //-----------------------------------------------------------------------
+    /** stop early once the SPRT of elo0 against elo1 decides (see MatchStats). */
+    public Tournament sprt ( double elo0, double elo1, double alpha, double beta ) {
+        this.sprt = new double[] { elo0, elo1, alpha, beta };
+        return this;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the results so far (for the first engine). */
+    public MatchStats stats ( ) {
+        return stats;
+    }
+    //=======================================================================
+    /** play the match.
+     *  @return the results for the first engine.
+     */
+    public MatchStats run ( ) throws InterruptedException {
+        ExecutorService cpu = Executors.newFixedThreadPool( threads, r -> {
+            Thread t = new Thread( r, "tournament-cpu" );
+            t.setDaemon( true );
+            return t;
+        } );
+        ExecutorService gameThreads = gameExecutor();
+        Semaphore running = new Semaphore( (concurrency > 0) ? concurrency : 2 * threads );
+        List< Future< ? > > played = new ArrayList<>( games );
+        try {
+            for (int g = 0; g < games && !decided.get(); g++) {
+                running.acquire();
+                if (decided.get()) {
+                    running.release();
+                    break;
+                }
+                int game = g;
+                played.add( gameThreads.submit( () -> {
+                    try {
+                        play( game, cpu );
+                    } finally {
+                        running.release();
+                    }
+                } ) );
+            }
+            for (Future< ? > f : played) {
+                try {
+                    f.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof RuntimeException)  throw (RuntimeException) e.getCause();
+                    throw new IllegalStateException( e.getCause() );
+                }
+            }
+        } finally {
+            gameThreads.shutdownNow();
+            cpu.shutdownNow();
+        }
+        return stats;
+    }
+    //-----------------------------------------------------------------------
+    /** @return an executor with a (virtual, if available) thread per game. */
+    private static ExecutorService gameExecutor ( ) {
+        try {
+            Method m = Executors.class.getMethod( "newVirtualThreadPerTaskExecutor" );
+            return (ExecutorService) m.invoke( null );
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool( r -> {
+                Thread t = new Thread( r, "tournament-game" );
+                t.setDaemon( true );
+                return t;
+            } );
+        }
+    }
+    //-----------------------------------------------------------------------
+    /** @return the opening of a pair of games. */
+    private Board opening ( int pair ) {
+        Random rnd = new Random( seed * 31 + pair );
+        Board b = new Board();
+        for (int i = 0; i < openingPlies && !b.gameOver(); i++) {
+            int[] moves = b.suggestMoves();
+            if (moves.length == 0)  break;
+            b.makeMove( moves[ rnd.nextInt( moves.length ) ] );
+        }
+        return b;
+    }
+    //=======================================================================
+    /** play game number game (the first engine is blue in even games). */
+    private void play ( int game, ExecutorService cpu ) {
+        Engine blueEngine = (game % 2 == 0) ? first : second;
+        Engine redEngine  = (game % 2 == 0) ? second : first;
+        try (Player blue = blueEngine.players.get();
+             Player red = redEngine.players.get()) {
+            play( game, blueEngine, redEngine, blue, red, cpu );
+        }
+    }
+    //-----------------------------------------------------------------------
+    /** play game number game between blue and red (made by blueEngine and
+     *  redEngine) and count it.
+     */
+    private void play ( int game, Engine blueEngine, Engine redEngine, Player blue, Player red, ExecutorService cpu ) {
+        Board b = opening( game / 2 );
+
+        StringBuilder moves = new StringBuilder();
+        String reason = "plies";
+        int plies = 0;
+        GameColor winner = GameColor.None;
+        while (plies < maxPlies) {
+            if (b.gameOver()) {
+                winner = b.isBlueWinner() ? GameColor.Blue : GameColor.Red;
+                reason = "won";
+                break;
+            }
+            GameColor turn = b.bluesTurn ? GameColor.Blue : GameColor.Red;
+            GameColor other = b.bluesTurn ? GameColor.Red : GameColor.Blue;
+            int m;
+            try {
+                m = ask( b.bluesTurn ? blue : red, b, cpu );
+            } catch (TimeoutException e) {
+                winner = other;
+                reason = "time";
+                break;
+            }
+            if (m == Move.NONE) {
+                winner = other;
+                reason = "no-move";
+                break;
+            }
+            if (!b.doMove( Move.fromRow( m ), Move.fromCol( m ), Move.toRow( m ), Move.toCol( m ) )) {
+                winner = other;
+                reason = "invalid";
+                break;
+            }
+            moves.append( ' ' ).append( Move.toString( Move.squares( m ) ) );
+            plies++;
+        }
+
+        String result = (winner == GameColor.Blue) ? "1-0" : (winner == GameColor.Red) ? "0-1" : "1/2";
+        double score = (winner == GameColor.None) ? 0.5
+                     : ((winner == GameColor.Blue) == (blueEngine == first)) ? 1 : 0;
+        stats.add( score );
+        if (sprt != null && stats.sprt( sprt[ 0 ], sprt[ 1 ], sprt[ 2 ], sprt[ 3 ] ) != 0)  decided.set( true );
+        if (results != null) {
+            String line = game + "\t" + blueEngine.name + "\t" + redEngine.name + "\t" + result
+                        + "\t" + reason + "\t" + plies + "\t" + moves.toString().trim() + "\n";
+            synchronized (results) {
+                try {
+                    results.append( line );
+                } catch (IOException e) {
+                    throw new UncheckedIOException( e );
+                }
+            }
+        }
+    }
+    //-----------------------------------------------------------------------
+    /** @return the move of player in b, within the time control.
+     *  @throws TimeoutException if it ran out of time.
+     */
+    private int ask ( Player player, Board b, ExecutorService cpu ) throws TimeoutException {
+        Board copy = new Board( b );
+        player.newMove();
+        if (!player.cpuBound()) {
+            long start = System.currentTimeMillis();
+            int m = player.move( copy, moveMillis );
+            if (System.currentTimeMillis() - start > moveMillis + GRACE_MILLIS)  throw new TimeoutException();
+            return m;
+        }
+        CountDownLatch started = new CountDownLatch( 1 );
+        long[] startNanos = new long[ 1 ];  //(published by started)
+        Future< Integer > f = cpu.submit( () -> {
+            startNanos[ 0 ] = System.nanoTime();
+            started.countDown();
+            return player.move( copy, moveMillis );
+        } );
+        try {
+            started.await();  //the time waiting for a CPU thread doesn't count
+            long left = moveMillis - (System.nanoTime() - startNanos[ 0 ]) / 1_000_000;
+            try {
+                return f.get( Math.max( 0, left ), TimeUnit.MILLISECONDS );
+            } catch (TimeoutException e) {
+                player.stop();
+                return f.get( GRACE_MILLIS, TimeUnit.MILLISECONDS );
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            f.cancel( true );
+            throw new TimeoutException( "interrupted" );
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)  throw (RuntimeException) e.getCause();
+            throw new IllegalStateException( e.getCause() );
+        } catch (TimeoutException e) {
+            f.cancel( true );
+            throw e;
+        }
+    }
+    //=======================================================================
+    public static void main ( String[] args ) throws InterruptedException {
+        int games = 100;
+        long millis = 200;
+        int threads = Runtime.getRuntime().availableProcessors();
+        List< String > rest = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[ i ]) {
+                case "-games":    games = Integer.parseInt( args[ ++i ] );  break;
+                case "-ms":       millis = Long.parseLong( args[ ++i ] );  break;
+                case "-threads":  threads = Integer.parseInt( args[ ++i ] );  break;
+                default:          rest.add( args[ i ] );  break;
+            }
+        }
+        if (rest.size() != 2) {
+            System.err.println( "usage: Tournament [-games n] [-ms n] [-threads n] depth1 depth2" );
+            System.exit( 1 );
+        }
+        int d1 = Integer.parseInt( rest.get( 0 ) ), d2 = Integer.parseInt( rest.get( 1 ) );
+        Tournament t = new Tournament(
+                new Engine( "depth" + d1, () -> Player.search( new SearchLimits().depth( d1 ).hashMegabytes( 8 ) ) ),
+                new Engine( "depth" + d2, () -> Player.search( new SearchLimits().depth( d2 ).hashMegabytes( 8 ) ) ) )
+            .games( games ).moveMillis( millis ).threads( threads ).sprt( 0, 10, 0.05, 0.05 ).results( System.out );
+        MatchStats stats = t.run();
+        System.out.println( stats + " llr " + String.format( "%.2f", stats.llr( 0, 10 ) ) );
+    }
+
+}  //end class Tournament
@@ -0,0 +1,172 @@
+package com.dsq2022.game;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size transposition table shared by any number of search threads.
+ *
+ * Entries are keyed by Board.zobristKey(). Each entry is two longs in two
+ * primitive arrays: the packed data (score, move, depth, bound, age) and
+ * key^data. Writers never lock; a reader recomputes key^data and only
+ * accepts the entry if it matches, so an entry torn by two threads writing
+ * at the same time is simply seen as a miss.
+ *
+ * The table is split into buckets of two slots. The first slot is
+ * depth-preferred (it keeps the deepest entry of the current search), the
+ * second is always replaced.
+ *
+ * Packed data layout (probe returns it; 0 means miss):
+ * <pre>
+ *   bits  0..31  score
+ *   bits 32..47  best move (16 bits, 0 for none)
+ *   bits 48..55  depth (0..255)
+ *   bits 56..57  bound (BOUND_EXACT, BOUND_LOWER, BOUND_UPPER)
+ *   bits 58..63  age (search generation)
+ * </pre>
+ */
+public final class TranspositionTable {
+    public static final int   BOUND_EXACT = 1;  ///< score is exact
+    public static final int   BOUND_LOWER = 2;  ///< score is a lower bound (fail high)
+    public static final int   BOUND_UPPER = 3;  ///< score is an upper bound (fail low)
+
+    public static final int   DEFAULT_MB = 64;  ///< default size in MB
+
+    private static final int  ENTRY_BYTES = 2 * Long.BYTES;
+
+    private final long[]  keys;  ///< key ^ data, per slot
+    private final long[]  data;  ///< packed data, per slot
+    private final int     bucketMask;
+    private volatile int  age;
+    //=======================================================================
+    /** Allocate a table of (at most) the given size in MB. The number of
+     *  entries is rounded down to a power of two.
+     *  @param megabytes is the size of the table (at least 1).
+     */
+    public TranspositionTable ( int megabytes ) {
+        if (megabytes < 1)  throw new IllegalArgumentException( "megabytes must be >= 1: " + megabytes );
+        long entries = Long.highestOneBit( ((long) megabytes << 20) / ENTRY_BYTES );
+        entries = Math.min( entries, 1L << 30 );  //max. java array size
+        this.keys = new long[ (int) entries ];
+        this.data = new long[ (int) entries ];
+        this.bucketMask = (int) (entries / 2) - 1;
+    }
+    //-----------------------------------------------------------------------
+    /** Allocate a table of DEFAULT_MB. */
+    public TranspositionTable ( ) {
+        this( DEFAULT_MB );
+    }
+    //-----------------------------------------------------------------------
+    /** @return the number of entries (slots) in the table. */
+    public int capacity ( ) {
+        return data.length;
+    }
+    //-----------------------------------------------------------------------
+    /** Remove all entries. Not safe while searches are running. */
+    public void clear ( ) {
+        Arrays.fill( keys, 0 );
+        Arrays.fill( data, 0 );
+        age = 0;
+    }
+    //-----------------------------------------------------------------------
+    /** Start a new search (e.g., for the next move). Entries of earlier
+     *  searches stay usable but are replaced first.
+     */
+    public void newSearch ( ) {
+        age = (age + 1) & 0x3F;
+    }
+    //=======================================================================
+    /** @return the packed data stored for key, or 0 if there is none. */
+    public long probe ( long key ) {
+        int slot = slot( key );
+        for (int i = slot; i < slot + 2; i++) {
+            long d = data[ i ];
+            if (d != 0 && (keys[ i ] ^ d) == key)  return d;
+        }
+        return 0;
+    }
+    //-----------------------------------------------------------------------
+    /** Store an entry.
+     *  @param key is the Zobrist key of the position.
+     *  @param depth is the remaining search depth (clamped to 0..255).
+     *  @param bound is BOUND_EXACT, BOUND_LOWER or BOUND_UPPER.
+     *  @param score is the score of the position.
+     *  @param move is the best move (16 bits) or 0 for none.
+     */
+    public void store ( long key, int depth, int bound, int score, int move ) {
+        int slot = slot( key );
+        int current = this.age;
+
+        //prefer the slot that already holds this position
+        int target = slot + 1;
+        boolean found = false;
+        for (int i = slot; i < slot + 2; i++) {
+            long d = data[ i ];
+            if (d != 0 && (keys[ i ] ^ d) == key) {
+                if (move == 0)  move = move( d );  //keep the old best move
+                target = i;
+                found = true;
+                break;
+            }
+        }
+        if (!found) {  //else a second copy of the position would be made
+            long d = data[ slot ];
+            if (d == 0 || age( d ) != current || depth >= depth( d ))  target = slot;
+        }
+
+        long d = pack( depth, bound, score, move, current );
+        data[ target ] = d;
+        keys[ target ] = key ^ d;
+    }
+    //-----------------------------------------------------------------------
+    /** @return an estimate of the fraction of slots (in [0,1]) used by the
+     *  current search, sampled from the first 1000 slots.
+     */
+    public double usage ( ) {
+        int n = Math.min( 1000, data.length );
+        int used = 0;
+        int current = this.age;
+        for (int i = 0; i < n; i++) {
+            long d = data[ i ];
+            if (d != 0 && age( d ) == current)  used++;
+        }
+        return (double) used / n;
+    }
+    //=======================================================================
+    private int slot ( long key ) {
+        return ((int) (key >>> 32) & bucketMask) << 1;
+    }
+    //-----------------------------------------------------------------------
+    private static long pack ( int depth, int bound, int score, int move, int age ) {
+        depth = Math.max( 0, Math.min( 255, depth ) );
+        return (score & 0xFFFFFFFFL)
+             | ((long) (move & 0xFFFF) << 32)
+             | ((long) depth << 48)
+             | ((long) (bound & 0x3) << 56)
+             | ((long) (age & 0x3F) << 58);
+    }
+    //-----------------------------------------------------------------------
+    /** @return the score of packed data d. */
+    public static int score ( long d ) {
+        return (int) d;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the best move of packed data d (0 for none). */
+    public static int move ( long d ) {
+        return (int) (d >>> 32) & 0xFFFF;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the depth of packed data d. */
+    public static int depth ( long d ) {
+        return (int) (d >>> 48) & 0xFF;
+    }
+    //-----------------------------------------------------------------------
+    /** @return the bound of packed data d. */
+    public static int bound ( long d ) {
+        return (int) (d >>> 56) & 0x3;
+    }
+    //-----------------------------------------------------------------------
+    private static int age ( long d ) {
+        return (int) (d >>> 58) & 0x3F;
+    }
+
+}  //end class TranspositionTable
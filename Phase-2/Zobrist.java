@@ -0,0 +1,46 @@
+package com.dsq2022.game;
+
+import java.util.SplittableRandom;
+
+/**
+ * Zobrist keys for Dou Shou Qi positions.
+ *
+ * A position's key is the XOR of one random 64-bit value per (square, piece)
+ * plus BLUES_TURN when it is blue's turn. Moving or placing a piece therefore
+ * changes the key with a couple of XORs instead of a scan of the whole Board.
+ *
+ * The values come from a fixed seed, so keys are the same in every JVM and
+ * may be stored (e.g., in serialized Boards or on disk).
+ */
+public final class Zobrist {
+    private static final long SEED = 0x4453512022L;
+
+    /// PIECE_SQUARE[ sq ][ piece.ordinal() ], where sq = r*fCols+c. rbNone is 0.
+    private static final long[][] PIECE_SQUARE = new long[ Board.fRows * Board.fCols ][ Piece.values().length ];
+
+    /// xor'ed into the key when it is blue's turn.
+    public static final long BLUES_TURN;
+
+    static {
+        SplittableRandom rnd = new SplittableRandom( SEED );
+        for (long[] square : PIECE_SQUARE) {
+            for (Piece p : Piece.values()) {
+                square[ p.ordinal() ] = (p == Piece.rbNone) ? 0 : rnd.nextLong();
+            }
+        }
+        BLUES_TURN = rnd.nextLong();
+    }
+
+    private Zobrist ( ) { }
+    //-----------------------------------------------------------------------
+    /** @return the key of piece p (null or rbNone for none) on (r,c). */
+    public static long key ( int r, int c, Piece p ) {
+        return key( r * Board.fCols + c, p );
+    }
+    //-----------------------------------------------------------------------
+    /** @return the key of piece p (null or rbNone for none) on square sq. */
+    public static long key ( int sq, Piece p ) {
+        return (p == null) ? 0 : PIECE_SQUARE[ sq ][ p.ordinal() ];
+    }
+
+}  //end class Zobrist
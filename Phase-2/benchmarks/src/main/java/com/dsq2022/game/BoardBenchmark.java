@@ -0,0 +1,164 @@
+package com.dsq2022.game;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * JMH benchmarks of the Board hot paths, each on three positions:
+ * <ul>
+ * <li>opening: Board().</li>
+ * <li>midgame: 40 plies of random (fixed seed) play from Board().</li>
+ * <li>endgame: a sparse position with 3 pieces per side.</li>
+ * </ul>
+ * The per-square queries (getPiece, getRank, getColor) and isValidMove
+ * cover every square (every neighbouring pair for isValidMove) per call,
+ * so their times are per board, not per square.
+ *
+ * It is in the game's package for the (protected) isValidMove.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class BoardBenchmark {
+    private static final int  fRows = Board.fRows, fCols = Board.fCols;
+
+    @Param( { "opening", "midgame", "endgame" } )
+    public String  position;
+
+    private Board  board;
+    private Board  same;   ///< an equal copy of board (for equals)
+    private int    move;   ///< a valid move for board
+    //=======================================================================
+    @Setup( Level.Trial )
+    public void setup ( ) {
+        switch (position) {
+            case "opening":  board = new Board();  break;
+            case "midgame":  board = midgame();    break;
+            case "endgame":  board = endgame();    break;
+            default:  throw new IllegalArgumentException( position );
+        }
+        same = new Board( board );
+        move = board.suggestMoves()[ 0 ];
+    }
+    //-----------------------------------------------------------------------
+    /** @return the position after 40 plies of random play (fixed seed). */
+    static Board midgame ( ) {
+        Random rnd = new Random( 2022 );
+        Board b = new Board();
+        for (int i = 0; i < 40; i++) {
+            int[] moves = b.suggestMoves();
+            int m = moves[ rnd.nextInt( moves.length ) ];
+            Board next = new Board( b );
+            next.makeMove( m );
+            if (next.gameOver() || next.suggestMoves().length == 0)  break;
+            b = next;
+        }
+        return b;
+    }
+    //-----------------------------------------------------------------------
+    /** @return a sparse endgame: blue lion, wolf, rat against red elephant,
+     *  tiger, rat.
+     */
+    static Board endgame ( ) {
+        Board b = new Board();
+        for (int r = 0; r < fRows; r++) {
+            for (int c = 0; c < fCols; c++)  b.setPiece( r, c, Piece.rbNone );
+        }
+        b.setPiece( 6, 1, Piece.bLion );
+        b.setPiece( 5, 4, Piece.bWolf );
+        b.setPiece( 4, 2, Piece.bRat );
+        b.setPiece( 1, 5, Piece.rElephant );
+        b.setPiece( 2, 0, Piece.rTiger );
+        b.setPiece( 3, 4, Piece.rRat );
+        return b;
+    }
+    //=======================================================================
+    @Benchmark
+    public void getPiece ( Blackhole bh ) {
+        for (int r = 0; r < fRows; r++) {
+            for (int c = 0; c < fCols; c++)  bh.consume( board.getPiece( r, c ) );
+        }
+    }
+    //-----------------------------------------------------------------------
+    @Benchmark
+    public int getRank ( ) {
+        int sum = 0;
+        for (int r = 0; r < fRows; r++) {
+            for (int c = 0; c < fCols; c++)  sum += board.getRank( r, c );
+        }
+        return sum;
+    }
+    //-----------------------------------------------------------------------
+    @Benchmark
+    public void getColor ( Blackhole bh ) {
+        for (int r = 0; r < fRows; r++) {
+            for (int c = 0; c < fCols; c++)  bh.consume( board.getColor( r, c ) );
+        }
+    }
+    //-----------------------------------------------------------------------
+    @Benchmark
+    public int isValidMove ( ) {
+        int valid = 0;
+        for (int r = 0; r < fRows; r++) {
+            for (int c = 0; c < fCols; c++) {
+                if (board.isValidMove( r, c, r - 1, c ))  valid++;
+                if (board.isValidMove( r, c, r + 1, c ))  valid++;
+                if (board.isValidMove( r, c, r, c - 1 ))  valid++;
+                if (board.isValidMove( r, c, r, c + 1 ))  valid++;
+            }
+        }
+        return valid;
+    }
+    //-----------------------------------------------------------------------
+    /** a copy plus doMove (compare with copy for doMove alone). */
+    @Benchmark
+    public Board doMove ( ) {
+        Board b = new Board( board );
+        b.doMove( Move.fromRow( move ), Move.fromCol( move ), Move.toRow( move ), Move.toCol( move ) );
+        return b;
+    }
+    //-----------------------------------------------------------------------
+    @Benchmark
+    public Board copy ( ) {
+        return new Board( board );
+    }
+    //-----------------------------------------------------------------------
+    @Benchmark
+    public int hashCodes ( ) {
+        return board.hashCode();
+    }
+    //-----------------------------------------------------------------------
+    @Benchmark
+    public boolean equalsCopy ( ) {
+        return board.equals( same );
+    }
+    //-----------------------------------------------------------------------
+    @Benchmark
+    public ArrayList< Board > suggest ( ) {
+        return board.suggest();
+    }
+    //-----------------------------------------------------------------------
+    @Benchmark
+    public int h ( ) {
+        return Board.h( board );
+    }
+
+}  //end class BoardBenchmark
@@ -0,0 +1,50 @@
+package com.dsq2022.game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * makeMove/unmakeMove of Board.
+ */
+class BoardTest {
+    private static final int  GAMES = 300;
+    private static final int  MAX_PLIES = 200;
+    //-----------------------------------------------------------------------
+    /** in random games, each move of each position is made and taken back:
+     *  the position, its key, its evaluation, bluesTurn and moveWasCapture
+     *  must be as before.
+     */
+    @Test
+    void unmakeMoveRestoresThePosition ( ) {
+        Random rnd = new Random( 5 );
+        MoveList moves = new MoveList();
+        long checked = 0;
+        for (int g = 0; g < GAMES; g++) {
+            Board b = new Board();
+            for (int ply = 0; ply < MAX_PLIES && !b.gameOver(); ply++) {
+                int n = b.generateMoves( moves );
+                if (n == 0)  break;
+                Board before = new Board( b );
+                for (int i = 0; i < n; i++) {
+                    int m = moves.get( i );
+                    int undo = b.makeMove( m );
+                    b.unmakeMove( undo );
+                    String at = "game " + g + " ply " + ply + " move " + Move.toString( m );
+                    assertEquals( before, b, at );
+                    assertEquals( before.zobristKey(), b.zobristKey(), at );
+                    assertEquals( before.evaluation(), b.evaluation(), at );
+                    assertEquals( before.bluesTurn, b.bluesTurn, at );
+                    assertEquals( before.moveWasCapture, b.moveWasCapture, at );
+                    checked++;
+                }
+                b.makeMove( moves.get( rnd.nextInt( n ) ) );
+            }
+        }
+        assertTrue( checked > 100_000, checked + " moves" );
+    }
+
+}  //end class BoardTest
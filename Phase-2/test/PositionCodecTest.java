@@ -0,0 +1,51 @@
+package com.dsq2022.game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The encoding of PositionCodec.
+ */
+class PositionCodecTest {
+    private static final int  GAMES = 300;
+    private static final int  MAX_PLIES = 200;
+    //-----------------------------------------------------------------------
+    /** every position of random games decodes (from the longs, and from a
+     *  buffer) to the same position, key, evaluation, bluesTurn and
+     *  moveWasCapture, and encodes the same again.
+     */
+    @Test
+    void decodeOfEncodeIsTheSamePosition ( ) {
+        Random rnd = new Random( 11 );
+        MoveList moves = new MoveList();
+        ByteBuffer buf = ByteBuffer.allocate( PositionCodec.BYTES );
+        for (int g = 0; g < GAMES; g++) {
+            Board b = new Board();
+            for (int ply = 0; ply < MAX_PLIES; ply++) {
+                long hi = PositionCodec.hi( b ), lo = PositionCodec.lo( b );
+                buf.clear();
+                PositionCodec.write( buf, b );
+                buf.flip();
+                for (Board d : new Board[] { PositionCodec.decode( hi, lo ), PositionCodec.read( buf ) }) {
+                    String at = "game " + g + " ply " + ply;
+                    assertEquals( b, d, at );
+                    assertEquals( b.zobristKey(), d.zobristKey(), at );
+                    assertEquals( b.evaluation(), d.evaluation(), at );
+                    assertEquals( b.bluesTurn, d.bluesTurn, at );
+                    assertEquals( b.moveWasCapture, d.moveWasCapture, at );
+                    assertEquals( hi, PositionCodec.hi( d ), at );
+                    assertEquals( lo, PositionCodec.lo( d ), at );
+                }
+                if (b.gameOver())  break;
+                int n = b.generateMoves( moves );
+                if (n == 0)  break;
+                b.makeMove( moves.get( rnd.nextInt( n ) ) );
+            }
+        }
+    }
+
+}  //end class PositionCodecTest
@@ -0,0 +1,100 @@
+package com.dsq2022.game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The lock-free adds of PositionSet.
+ */
+class PositionSetTest {
+    private static final int  THREADS = 8;
+    private static final int  KEYS = 20_000;  ///< distinct positions
+    //-----------------------------------------------------------------------
+    /** the made-up (but non-zero) encoding of key k; groups of 4 keys share
+     *  hi, and every other key has the capture bit, which is not part of it.
+     */
+    private static long hi ( int k ) {
+        return (k / 4 + 1) | ((k & 1L) << PositionCodec.CAPTURE_BIT);
+    }
+
+    private static long lo ( int k ) {
+        return k + 1;
+    }
+    //-----------------------------------------------------------------------
+    /** threads add the same positions at the same time, each in its own
+     *  order and some of them more than once: every add is counted once.
+     */
+    @Test
+    void concurrentAddsOfTheSamePositions ( ) throws Exception {
+        PositionSet set = new PositionSet( KEYS );
+        CyclicBarrier start = new CyclicBarrier( THREADS );
+        AtomicReference< Throwable > failed = new AtomicReference<>();
+        List< Thread > threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int seed = t;
+            Thread th = new Thread( () -> {
+                try {
+                    int[] order = shuffled( new Random( seed ) );
+                    start.await();
+                    for (int k : order)  set.add( hi( k ), lo( k ), 1 + k % 3 );
+                } catch (Throwable e) {
+                    failed.compareAndSet( null, e );
+                }
+            }, "position-set-test-" + t );
+            threads.add( th );
+            th.start();
+        }
+        for (Thread th : threads)  th.join();
+        if (failed.get() != null)  throw new AssertionError( failed.get() );
+
+        assertEquals( KEYS, set.size() );
+        long expected = 0;
+        for (int k = 0; k < KEYS; k++) {
+            assertEquals( THREADS * (1 + k % 3), set.count( hi( k ), lo( k ) ), "key " + k );
+            expected += THREADS * (1 + k % 3);
+        }
+        long[] seen = new long[ 2 ];
+        set.forEach( (hi, lo, count) -> {
+            seen[ 0 ]++;
+            seen[ 1 ] += count;
+        } );
+        assertEquals( KEYS, seen[ 0 ] );
+        assertEquals( expected, seen[ 1 ] );
+        assertEquals( 0, set.count( hi( KEYS ), lo( KEYS ) ) );
+    }
+    //-----------------------------------------------------------------------
+    /** @return 0..KEYS-1 in random order. */
+    private static int[] shuffled ( Random rnd ) {
+        int[] a = new int[ KEYS ];
+        for (int i = 0; i < KEYS; i++)  a[ i ] = i;
+        for (int i = KEYS - 1; i > 0; i--) {
+            int j = rnd.nextInt( i + 1 );
+            int x = a[ i ];
+            a[ i ] = a[ j ];
+            a[ j ] = x;
+        }
+        return a;
+    }
+    //-----------------------------------------------------------------------
+    /** past MAX_LOAD a new position is refused, but known ones still count. */
+    @Test
+    void fullSetThrows ( ) {
+        PositionSet set = new PositionSet( 100 );
+        long max = (long) (set.capacity() * PositionSet.MAX_LOAD);
+        for (int k = 0; k < max; k++)  set.add( hi( k ), lo( k ), 1 );
+        assertEquals( max, set.size() );
+
+        assertThrows( IllegalStateException.class, () -> set.add( hi( (int) max ), lo( (int) max ), 1 ) );
+        assertEquals( max, set.size() );
+        assertEquals( 2, set.add( hi( 0 ), lo( 0 ), 1 ) );
+    }
+
+}  //end class PositionSetTest
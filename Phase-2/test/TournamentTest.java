@@ -0,0 +1,53 @@
+package com.dsq2022.game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Time control of Tournament and Player.
+ */
+class TournamentTest {
+    //-----------------------------------------------------------------------
+    /** with more games than CPU threads, moves wait for a thread; that time
+     *  must not count, and searches without a limit of their own must end
+     *  on time (the millis of the move).
+     */
+    @Test
+    void noTimeLossesWithMoreGamesThanThreads ( ) throws InterruptedException {
+        StringBuilder results = new StringBuilder();
+        Tournament t = new Tournament(
+                new Tournament.Engine( "a", () -> Player.search( new SearchLimits().hashMegabytes( 8 ) ) ),
+                new Tournament.Engine( "b", () -> Player.search( new SearchLimits().hashMegabytes( 8 ) ) ) )
+            .games( 4 ).moveMillis( 100 ).threads( 1 ).concurrency( 4 ).maxPlies( 12 ).results( results );
+        MatchStats stats = t.run();
+
+        assertEquals( 4, stats.games() );
+        results.toString().lines().forEach( line ->
+            assertNotEquals( "time", line.split( "\t" )[ 4 ], line ) );
+    }
+    //-----------------------------------------------------------------------
+    /** a stop that comes before the move starts still stops it, and is
+     *  forgotten by the next newMove.
+     */
+    @Test
+    void stopBeforeTheMoveStartsIsKept ( ) {
+        Player p = Player.search( new SearchLimits().hashMegabytes( 1 ) );
+        p.newMove();
+        p.stop();
+        long start = System.currentTimeMillis();
+        int m = p.move( new Board(), 0 );  //no limit: only the stop ends it
+        assertNotEquals( Move.NONE, m );
+        assertTrue( System.currentTimeMillis() - start < 1000 );
+
+        Search search = new Search( new SearchLimits().hashMegabytes( 1 ) );
+        search.stop();
+        assertEquals( 0, search.search( new Board(), 200, false ).depth() );
+        search.stop();
+        search.clearStop();
+        assertTrue( search.search( new Board(), 200, false ).depth() > 1 );
+    }
+
+}  //end class TournamentTest